@@ -13,12 +13,23 @@ import io.numaproj.numaflow.function.types.Message;
 import io.numaproj.numaflow.function.types.MessageList;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.Collection;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Base class for event handlers.
+ * When the BATCH_WINDOW_MS environment variable is set, messages are collected into micro-batches
+ * (of up to BATCH_SIZE messages, or whatever arrives within the window) that are processed together:
+ * with a single lookup of the current state of the assets (for a {@link BatchedEventHandler}) and a
+ * single save of all the resulting changes. Each message is still routed individually.
+ * When the COALESCE_WINDOW_MS environment variable is set, the events for each asset are first held for
+ * that window, and only the latest of them is processed (any earlier ones are dropped).
  */
 @Getter
 @Slf4j
@@ -33,10 +44,62 @@ public abstract class AbstractNumaflowHandler extends MapHandler {
         Atlan.setApiToken(System.getenv("ATLAN_API_KEY"));
     }
 
+    /** Maximum number of micro-batches to process at the same time. */
+    private static final int MAX_CONCURRENT_BATCHES = 4;
+
     private final AtlanEventHandler handler;
+    private final long batchWindow;
+    private final int batchSize;
+
+    @Getter(AccessLevel.NONE)
+    private final Object windowLock = new Object();
+
+    @Getter(AccessLevel.NONE)
+    private List<PendingEvent> window = new ArrayList<>();
+
+    @Getter(AccessLevel.NONE)
+    private final ScheduledExecutorService scheduler;
+
+    @Getter(AccessLevel.NONE)
+    private final EventCoalescer coalescer;
 
     public AbstractNumaflowHandler(AtlanEventHandler handler) {
         this.handler = handler;
+        this.batchWindow = getSetting("BATCH_WINDOW_MS", 0);
+        this.batchSize = (int) getSetting("BATCH_SIZE", 50);
+        if (batchWindow > 0) {
+            log.info("Processing events in micro-batches of up to {} events, within {}ms.", batchSize, batchWindow);
+            scheduler = Executors.newScheduledThreadPool(MAX_CONCURRENT_BATCHES, r -> {
+                Thread thread = new Thread(r, "event-batcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            scheduler = null;
+        }
+        long coalesceWindow = getSetting("COALESCE_WINDOW_MS", 0);
+        if (coalesceWindow > 0) {
+            log.info("Processing only the latest event for each asset within {}ms.", coalesceWindow);
+            coalescer = new EventCoalescer(coalesceWindow);
+        } else {
+            coalescer = null;
+        }
+    }
+
+    private static long getSetting(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value != null) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                log.warn(
+                        "Unable to determine a number from the {} value of '{}', falling back to a default of {}.",
+                        name,
+                        value,
+                        defaultValue);
+            }
+        }
+        return defaultValue;
     }
 
     /**
@@ -80,17 +143,215 @@ public abstract class AbstractNumaflowHandler extends MapHandler {
         }
     }
 
+    /**
+     * Handle a micro-batch of Atlan events using the same 5-step flow as for a single event, but:
+     * retrieving the current state of all the assets at once (if the handler is a {@link BatchedEventHandler}),
+     * and then applying all the changes back to Atlan at once. If the changes cannot be applied all at once,
+     * they are retried asset-by-asset so that each message is still routed according to its own outcome.
+     *
+     * @param batch the events to process, each of which is completed with its own routing
+     */
+    private void processEvents(List<PendingEvent> batch) {
+        try {
+            // Only the latest event for each asset in the batch needs to be processed
+            Map<String, PendingEvent> latestByAsset = new LinkedHashMap<>();
+            for (PendingEvent pending : batch) {
+                try {
+                    if (handler.validatePrerequisites(pending.event, log)) {
+                        PendingEvent earlier = latestByAsset.put(getAssetKey(pending.getAsset()), pending);
+                        if (earlier != null) {
+                            log.info(
+                                    "Superseded by a later event for the same asset, dropping: {}",
+                                    earlier.getAsset().getQualifiedName());
+                            earlier.complete(drop());
+                        }
+                    } else {
+                        pending.complete(failed(pending.keys, pending.data));
+                    }
+                } catch (AtlanException e) {
+                    log.error("Unable to validate prerequisites, failing.", e);
+                    pending.complete(failed(pending.keys, pending.data));
+                }
+            }
+            List<PendingEvent> valid = new ArrayList<>(latestByAsset.values());
+            Map<String, Asset> current = null;
+            if (handler instanceof BatchedEventHandler && !valid.isEmpty()) {
+                List<Asset> fromEvents = new ArrayList<>(valid.size());
+                for (PendingEvent pending : valid) {
+                    fromEvents.add(pending.getAsset());
+                }
+                try {
+                    current = ((BatchedEventHandler) handler)
+                            .getCurrentStates(Atlan.getDefaultClient(), fromEvents, log);
+                } catch (AtlanException e) {
+                    log.warn(
+                            "Unable to look up the current state of {} assets at once, retrying each.",
+                            valid.size(),
+                            e);
+                }
+            }
+            Map<PendingEvent, Collection<Asset>> changes = new LinkedHashMap<>();
+            for (PendingEvent pending : valid) {
+                Asset asset = pending.getAsset();
+                try {
+                    Asset latest = current == null
+                            ? handler.getCurrentState(Atlan.getDefaultClient(), asset, log)
+                            : current.get(asset.getGuid());
+                    if (latest == null) {
+                        log.error("Unable to find Atlan asset: {}", asset.getQualifiedName());
+                        pending.complete(failed(pending.keys, pending.data));
+                        continue;
+                    }
+                    Collection<Asset> updated = handler.calculateChanges(latest, log);
+                    if (!updated.isEmpty()) {
+                        changes.put(pending, updated);
+                    } else {
+                        pending.complete(drop());
+                    }
+                } catch (AtlanException e) {
+                    log.error("Unable to update Atlan asset: {}", asset.getQualifiedName(), e);
+                    pending.complete(failed(pending.keys, pending.data));
+                }
+            }
+            saveChanges(changes);
+        } catch (RuntimeException e) {
+            log.error("Unable to process a batch of {} events, failing any that are incomplete.", batch.size(), e);
+        } finally {
+            for (PendingEvent pending : batch) {
+                if (!pending.isComplete()) {
+                    pending.complete(failed(pending.keys, pending.data));
+                }
+            }
+        }
+    }
+
+    private void saveChanges(Map<PendingEvent, Collection<Asset>> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        // Never send the same asset more than once in the same save (the latest change wins)
+        Map<String, Asset> all = new LinkedHashMap<>();
+        for (Collection<Asset> updated : changes.values()) {
+            for (Asset asset : updated) {
+                all.put(getAssetKey(asset), asset);
+            }
+        }
+        try {
+            handler.saveChanges(Atlan.getDefaultClient(), all.values(), log);
+            for (PendingEvent pending : changes.keySet()) {
+                pending.complete(succeeded(pending.keys, pending.data));
+            }
+        } catch (AtlanException e) {
+            log.warn("Unable to save the changes for {} events at once, retrying each.", changes.size(), e);
+            for (Map.Entry<PendingEvent, Collection<Asset>> entry : changes.entrySet()) {
+                PendingEvent pending = entry.getKey();
+                try {
+                    handler.saveChanges(Atlan.getDefaultClient(), entry.getValue(), log);
+                    pending.complete(succeeded(pending.keys, pending.data));
+                } catch (AtlanException eEach) {
+                    log.error("Unable to update Atlan asset: {}", pending.getAsset().getQualifiedName(), eEach);
+                    pending.complete(failed(pending.keys, pending.data));
+                }
+            }
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public MessageList processMessage(String[] keys, Datum data) {
         try {
-            return processEvent(getAtlanEvent(data), keys, data);
+            AtlanEvent event = getAtlanEvent(data);
+            if (coalescer != null && event.getPayload() != null) {
+                Asset asset = event.getPayload().getAsset();
+                if (asset != null && asset.getGuid() != null && !coalescer.awaitLatest(asset.getGuid())) {
+                    log.info("Superseded by a later event for the same asset, dropping: {}", asset.getQualifiedName());
+                    return drop();
+                }
+            }
+            if (batchWindow > 0) {
+                return processInWindow(new PendingEvent(event, keys, data));
+            }
+            return processEvent(event, keys, data);
         } catch (IOException e) {
             log.error("Unable to deserialize event: {}", new String(data.getValue(), StandardCharsets.UTF_8), e);
             return failed(keys, data.getValue());
         }
     }
 
+    private static String getAssetKey(Asset asset) {
+        return asset.getGuid() != null ? asset.getGuid() : asset.getTypeName() + "::" + asset.getQualifiedName();
+    }
+
+    /**
+     * Add the event to the current micro-batch, and wait for the micro-batch to be processed.
+     * The micro-batch is processed as soon as it is full (by the thread that filled it), or
+     * otherwise once the window has elapsed since its first event arrived.
+     *
+     * @param pending the event to process
+     * @return the routing for the event's message
+     */
+    private MessageList processInWindow(PendingEvent pending) {
+        List<PendingEvent> full = null;
+        synchronized (windowLock) {
+            window.add(pending);
+            if (window.size() >= batchSize) {
+                full = window;
+                window = new ArrayList<>();
+            } else if (window.size() == 1) {
+                List<PendingEvent> opened = window;
+                scheduler.schedule(() -> processWindow(opened), batchWindow, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            processEvents(full);
+        }
+        return pending.result.join();
+    }
+
+    private void processWindow(List<PendingEvent> opened) {
+        synchronized (windowLock) {
+            if (window != opened) {
+                // Already processed, as it filled up before the window elapsed
+                return;
+            }
+            window = new ArrayList<>();
+        }
+        processEvents(opened);
+    }
+
+    /**
+     * An event waiting to be processed as part of a micro-batch, along with its message.
+     */
+    private static final class PendingEvent {
+        private final AtlanEvent event;
+        private final String[] keys;
+        private final Datum data;
+        private final CompletableFuture<MessageList> result = new CompletableFuture<>();
+
+        PendingEvent(AtlanEvent event, String[] keys, Datum data) {
+            this.event = event;
+            this.keys = keys;
+            this.data = data;
+        }
+
+        Asset getAsset() {
+            return event.getPayload().getAsset();
+        }
+
+        /**
+         * Route the event's message, unless it has already been routed.
+         *
+         * @param routing for the event's message
+         */
+        void complete(MessageList routing) {
+            result.complete(routing);
+        }
+
+        boolean isComplete() {
+            return result.isDone();
+        }
+    }
+
     /**
      * Translate the Numaflow message into an Atlan event object.
      *
@@ -0,0 +1,70 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+/* Copyright 2023 Atlan Pte. Ltd. */
+package com.atlan.samples.events;
+
+import com.atlan.AtlanClient;
+import com.atlan.events.AtlanEventHandler;
+import com.atlan.exception.AtlanException;
+import com.atlan.model.assets.Asset;
+import com.atlan.model.search.IndexSearchRequest;
+import java.util.*;
+import org.slf4j.Logger;
+
+/**
+ * Event handler that can retrieve the current state of many assets at once, so that a window of
+ * events can be processed with a single lookup rather than one lookup per event.
+ */
+public interface BatchedEventHandler extends AtlanEventHandler {
+
+    /**
+     * Retrieve the current state of many assets at once.
+     *
+     * @param client connectivity to the Atlan tenant
+     * @param fromEvents the assets from the events (which may not have all the details needed)
+     * @param log a logger to log anything you'd like to log
+     * @return the current state of each asset that could be found, keyed by its GUID
+     * @throws AtlanException on any problems retrieving the assets
+     */
+    Map<String, Asset> getCurrentStates(AtlanClient client, Collection<Asset> fromEvents, Logger log)
+            throws AtlanException;
+
+    /**
+     * Retrieve the current state of many assets at once, with a single search by GUID. This gives the same
+     * view of each asset as {@link AtlanEventHandler#getCurrentViewOfAsset} does for a single asset.
+     *
+     * @param client connectivity to the Atlan tenant
+     * @param fromEvents the assets from the events
+     * @param searchAttributes the attributes to retrieve for each asset
+     * @param includeMeanings if true, include the assigned terms of each asset
+     * @param includeAtlanTags if true, include the Atlan tags of each asset
+     * @return the current state of each asset that could be found, keyed by its GUID
+     * @throws AtlanException on any problems searching for the assets
+     */
+    static Map<String, Asset> getCurrentViewOfAssets(
+            AtlanClient client,
+            Collection<Asset> fromEvents,
+            Collection<String> searchAttributes,
+            boolean includeMeanings,
+            boolean includeAtlanTags)
+            throws AtlanException {
+        Set<String> guids = new LinkedHashSet<>();
+        for (Asset asset : fromEvents) {
+            guids.add(asset.getGuid());
+        }
+        Map<String, Asset> current = new HashMap<>();
+        if (!guids.isEmpty()) {
+            IndexSearchRequest request = client.assets
+                    .select()
+                    .where(Asset.GUID.in(guids))
+                    .pageSize(guids.size())
+                    ._includesOnResults(searchAttributes)
+                    .toRequest()
+                    .toBuilder()
+                    .excludeMeanings(!includeMeanings)
+                    .excludeAtlanTags(!includeAtlanTags)
+                    .build();
+            request.search(client).stream().forEach(asset -> current.put(asset.getGuid(), asset));
+        }
+        return current;
+    }
+}
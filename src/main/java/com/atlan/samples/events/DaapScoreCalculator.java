@@ -27,7 +27,7 @@ import org.slf4j.Logger;
  * An example to calculate a Data as a Product (DaaP) completeness score based on
  * the level of enrichment of an asset.
  */
-public class DaapScoreCalculator implements AtlanEventHandler {
+public class DaapScoreCalculator implements BatchedEventHandler {
 
     private static final String CM_DAAP = "DaaP";
     private static final String CM_ATTR_DAAP_SCORE = "Score";
@@ -67,9 +67,8 @@ public class DaapScoreCalculator implements AtlanEventHandler {
     /** {@inheritDoc} */
     @Override
     public Asset getCurrentState(AtlanClient client, Asset fromEvent, Logger log) throws AtlanException {
-        Set<String> searchAttrs = new HashSet<>(SCORED_ATTRS);
-        searchAttrs.addAll(client.getCustomMetadataCache().getAttributesForSearchResults(CM_DAAP));
-        Asset asset = AtlanEventHandler.getCurrentViewOfAsset(client, fromEvent, searchAttrs, true, true);
+        Asset asset =
+                AtlanEventHandler.getCurrentViewOfAsset(client, fromEvent, getSearchAttributes(client), true, true);
         if (asset == null) {
             throw new NotFoundException(
                     ErrorCode.ASSET_NOT_FOUND_BY_QN, fromEvent.getQualifiedName(), fromEvent.getTypeName());
@@ -77,6 +76,20 @@ public class DaapScoreCalculator implements AtlanEventHandler {
         return asset;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, Asset> getCurrentStates(AtlanClient client, Collection<Asset> fromEvents, Logger log)
+            throws AtlanException {
+        return BatchedEventHandler.getCurrentViewOfAssets(
+                client, fromEvents, getSearchAttributes(client), true, true);
+    }
+
+    private static Set<String> getSearchAttributes(AtlanClient client) throws AtlanException {
+        Set<String> searchAttrs = new HashSet<>(SCORED_ATTRS);
+        searchAttrs.addAll(client.getCustomMetadataCache().getAttributesForSearchResults(CM_DAAP));
+        return searchAttrs;
+    }
+
     /** {@inheritDoc} */
     @Override
     public Collection<Asset> calculateChanges(Asset asset, Logger log) throws AtlanException {
@@ -0,0 +1,79 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+/* Copyright 2023 Atlan Pte. Ltd. */
+package com.atlan.samples.events;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+
+/**
+ * Coalesces the events for each asset over a short window, so that a burst of edits to the same asset
+ * results in only the latest event being processed (rather than fetching, and possibly saving, the same
+ * asset once per event). An event is only ever dropped in favor of a later event for the same asset that
+ * this coalescer has actually received, and will release for processing.
+ */
+public class EventCoalescer {
+
+    /** Time (in milliseconds) to hold the events for an asset, before releasing the latest of them. */
+    @Getter
+    private final long window;
+
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Construct a new coalescer.
+     *
+     * @param window time (in milliseconds) to hold the events for an asset, before releasing the latest of them
+     */
+    public EventCoalescer(long window) {
+        this.window = window;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "event-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Hold an event for the asset with the given GUID until the window for that asset has elapsed.
+     * The window opens with the first event for the asset, and any event received for the same asset
+     * within the window supersedes the one held before it — so at most one event per asset is released
+     * per window.
+     *
+     * @param guid of the asset the event is about
+     * @return true if the event is the latest for the asset (and should be processed), or false if it
+     *     was superseded by a later event for the same asset (and can be dropped)
+     */
+    public boolean awaitLatest(String guid) {
+        CompletableFuture<Boolean> mine = new CompletableFuture<>();
+        Slot opened = new Slot();
+        Slot slot = slots.compute(guid, (k, existing) -> {
+            Slot held = existing == null ? opened : existing;
+            if (held.latest != null) {
+                held.latest.complete(false);
+            }
+            held.latest = mine;
+            return held;
+        });
+        if (slot == opened) {
+            scheduler.schedule(() -> release(guid, opened), window, TimeUnit.MILLISECONDS);
+        }
+        return mine.join();
+    }
+
+    private void release(String guid, Slot slot) {
+        if (slots.remove(guid, slot)) {
+            // Once removed, no later event can supersede what the slot holds
+            slot.latest.complete(true);
+        }
+    }
+
+    private static final class Slot {
+        private volatile CompletableFuture<Boolean> latest = null;
+    }
+}
@@ -12,6 +12,7 @@ import com.atlan.model.enums.CertificateStatus;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.slf4j.Logger;
 
@@ -19,7 +20,7 @@ import org.slf4j.Logger;
  * An example to automatically revert any asset that is marked VERIFIED if it does not
  * at least have: a description, at least one owner, and lineage.
  */
-public class VerificationEnforcer implements AtlanEventHandler {
+public class VerificationEnforcer implements BatchedEventHandler {
 
     List<String> REQUIRED_ATTRS = List.of(
             "description",
@@ -57,6 +58,13 @@ public class VerificationEnforcer implements AtlanEventHandler {
         return asset;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, Asset> getCurrentStates(AtlanClient client, Collection<Asset> fromEvents, Logger log)
+            throws AtlanException {
+        return BatchedEventHandler.getCurrentViewOfAssets(client, fromEvents, REQUIRED_ATTRS, false, false);
+    }
+
     /** {@inheritDoc} */
     @Override
     public Collection<Asset> calculateChanges(Asset asset, Logger log) throws AtlanException {
@@ -28,6 +28,8 @@ public abstract class AbstractLoader {
     private String _bucket = null;
     private String _filename = null;
     private boolean _updateOnly = false;
+    private String _identityCache = null;
+    private boolean _lineageSorted = false;
 
     /**
      * Extract the configuration parameters to use from the lambda payload (or equivalent).
@@ -53,6 +55,9 @@ public abstract class AbstractLoader {
             _region = Region.of(region);
             _bucket = event.getOrDefault("BUCKET", null);
             _filename = event.getOrDefault("FILENAME", "atlan-documentation-template.xlsx");
+            _identityCache = event.getOrDefault("IDENTITY_CACHE", null);
+            String lineageSorted = event.getOrDefault("LINEAGE_SORTED", "false");
+            _lineageSorted = lineageSorted.toUpperCase(Locale.ROOT).equals("TRUE");
             Atlan.setBaseUrl(event.getOrDefault("ATLAN_BASE_URL", null));
             Atlan.setApiToken(event.getOrDefault("ATLAN_API_KEY", null));
             String maxRetries = event.getOrDefault("MAX_RETRIES", "20");
@@ -321,4 +326,12 @@ public abstract class AbstractLoader {
     public boolean isUpdateOnly() {
         return _updateOnly;
     }
+
+    public String getIdentityCache() {
+        return _identityCache;
+    }
+
+    public boolean isLineageSorted() {
+        return _lineageSorted;
+    }
 }
@@ -8,11 +8,19 @@ import com.atlan.Atlan;
 import com.atlan.exception.AtlanException;
 import com.atlan.model.assets.*;
 import com.atlan.model.enums.AtlanConnectorType;
+import com.atlan.samples.loaders.caches.PersistentIdentityCache;
 import com.atlan.samples.loaders.models.*;
 import com.atlan.samples.readers.ExcelReader;
+import com.atlan.samples.readers.ExcelStreamReader;
 import com.atlan.util.AssetBatch;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -22,6 +30,10 @@ public class DocumentationTemplateLoader extends AbstractLoader implements Reque
     private static final String OBJECT_SHEET = "Object Store Assets";
     private static final String LINEAGE_SHEET = "Lineage";
 
+    // Connections already resolved (in this run, or persisted from a previous run)
+    // Note: synchronized rather than concurrent, as lookups may be made for a null connection
+    private final Map<ConnectionDetails, String> knownConnections = Collections.synchronizedMap(new HashMap<>());
+
     public static void main(String[] args) {
         DocumentationTemplateLoader dtl = new DocumentationTemplateLoader();
         Map<String, String> event = new HashMap<>(System.getenv());
@@ -48,22 +60,73 @@ public class DocumentationTemplateLoader extends AbstractLoader implements Reque
             }
             parseParametersFromEvent(event);
 
-            ExcelReader xlsx = new ExcelReader(getFilename());
+            // Stream the template rather than loading the whole workbook, as the lineage sheet can be very large
+            ExcelStreamReader xlsx = new ExcelStreamReader(getFilename());
 
-            try {
-                processTabularAssets(xlsx);
-            } catch (IOException e) {
-                log.warn("Could not find sheet: {} — skipping", TABULAR_SHEET);
+            PersistentIdentityCache identities = null;
+            if (getIdentityCache() != null) {
+                identities = PersistentIdentityCache.open(getIdentityCache(), getBatchSize());
+                for (Map.Entry<String, String> entry : identities
+                        .getQualifiedNames(PersistentIdentityCache.CONNECTIONS)
+                        .entrySet()) {
+                    ConnectionDetails.addToCache(knownConnections, entry.getKey(), entry.getValue());
+                }
             }
-            try {
-                processObjectStoreAssets(xlsx);
-            } catch (IOException e) {
-                log.warn("Could not find sheet: {} — skipping", OBJECT_SHEET);
+
+            List<Map<String, String>> tabular = readSheet(xlsx, TABULAR_SHEET);
+            List<Map<String, String>> objects = readSheet(xlsx, OBJECT_SHEET);
+            // Lineage rows are never held in memory all at once: they are streamed from the sheet on each pass
+            RowSource lineage = xlsx.hasSheet(LINEAGE_SHEET)
+                    ? action -> xlsx.streamRowsFromSheet(LINEAGE_SHEET, 1, action)
+                    : null;
+            if (lineage == null) {
+                log.warn("Could not find sheet: {} — skipping", LINEAGE_SHEET);
+            }
+
+            // Resolve the connections for both asset sheets at once, and then load each hierarchy
+            // concurrently (they share nothing other than the connections). Lineage can resolve its own
+            // connections in the meantime, but must wait for both hierarchies before creating any processes.
+            List<Map<String, String>> assetRows = new ArrayList<>();
+            if (tabular != null) {
+                assetRows.addAll(tabular);
+            }
+            if (objects != null) {
+                assetRows.addAll(objects);
             }
+            Map<ConnectionDetails, String> connectionCache =
+                    assetRows.isEmpty() ? knownConnections : upsertConnections(assetRows);
+
+            ExecutorService executor = Executors.newFixedThreadPool(3);
             try {
-                processLineage(xlsx);
-            } catch (IOException e) {
-                log.warn("Could not find sheet: {} — skipping", LINEAGE_SHEET);
+                List<Future<?>> assetLoads = new ArrayList<>();
+                if (tabular != null) {
+                    assetLoads.add(executor.submit(() -> loadTabularAssets(tabular, connectionCache)));
+                }
+                if (objects != null) {
+                    assetLoads.add(executor.submit(() -> loadObjectStoreAssets(objects, connectionCache)));
+                }
+                List<Future<?>> allLoads = new ArrayList<>(assetLoads);
+                if (lineage != null) {
+                    allLoads.add(executor.submit(() -> {
+                        Map<ConnectionDetails, String> lineageCache = resolveLineageConnections(lineage);
+                        // Lineage can only be created once the assets it references exist
+                        awaitAll(assetLoads);
+                        loadLineage(lineage, lineageCache);
+                        return null;
+                    }));
+                }
+                awaitAll(allLoads);
+            } finally {
+                executor.shutdown();
+            }
+
+            if (identities != null) {
+                Map<String, String> resolved = new HashMap<>();
+                for (Map.Entry<ConnectionDetails, String> entry : knownConnections.entrySet()) {
+                    resolved.put(entry.getKey().getIdentity(), entry.getValue());
+                }
+                identities.record(PersistentIdentityCache.CONNECTIONS, Connection.TYPE_NAME, resolved);
+                identities.save();
             }
 
         } catch (IOException e) {
@@ -75,14 +138,75 @@ public class DocumentationTemplateLoader extends AbstractLoader implements Reque
     }
 
     public void processTabularAssets(ExcelReader xlsx) throws IOException {
-        log.info("Loading tabular assets from: {}::{}", getFilename(), TABULAR_SHEET);
-
         List<Map<String, String>> data = xlsx.getRowsFromSheet(TABULAR_SHEET, 1);
+        loadTabularAssets(data, upsertConnections(data));
+    }
 
-        // Fastest way will be to load in batches by level of the asset hierarchy,
-        // even though this means multiple passes over the data (it's all in-memory)
+    public void processObjectStoreAssets(ExcelReader xlsx) throws IOException {
+        List<Map<String, String>> data = xlsx.getRowsFromSheet(OBJECT_SHEET, 1);
+        loadObjectStoreAssets(data, upsertConnections(data));
+    }
 
-        // 1. Upsert connections for each unique combination of values in the Connection columns
+    public void processLineage(ExcelReader xlsx) throws IOException {
+        List<Map<String, String>> data = xlsx.getRowsFromSheet(LINEAGE_SHEET, 1);
+        loadLineage(data::forEach, resolveLineageConnections(data::forEach));
+    }
+
+    /**
+     * Source of the rows of a sheet, which can be passed over any number of times.
+     */
+    @FunctionalInterface
+    private interface RowSource {
+        /**
+         * Apply the action to each row of the sheet, in order.
+         *
+         * @param action to apply to each row
+         * @throws IOException on any problems reading the rows
+         */
+        void forEach(Consumer<Map<String, String>> action) throws IOException;
+    }
+
+    /**
+     * Retrieve all the rows from the named sheet of the template.
+     *
+     * @param xlsx the template
+     * @param sheet name of the sheet from which to retrieve the rows
+     * @return the rows of the sheet, or null if the template has no such sheet
+     */
+    private List<Map<String, String>> readSheet(ExcelStreamReader xlsx, String sheet) {
+        try {
+            return xlsx.getRowsFromSheet(sheet, 1);
+        } catch (IOException e) {
+            log.warn("Could not find sheet: {} — skipping", sheet);
+            return null;
+        }
+    }
+
+    /**
+     * Wait for all the provided loads to complete.
+     *
+     * @param loads to wait for
+     */
+    private void awaitAll(List<Future<?>> loads) {
+        for (Future<?> load : loads) {
+            try {
+                load.get();
+            } catch (ExecutionException e) {
+                log.error("Unable to load one of the sheets of the template.", e.getCause());
+            } catch (InterruptedException e) {
+                log.error("Interrupted while waiting for the sheets of the template to be loaded.", e);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Upsert connections for each unique combination of values in the Connection columns.
+     *
+     * @param data rows from which to upsert the connections
+     * @return a mapping of connection headers to their qualifiedName (as created or found)
+     */
+    private Map<ConnectionDetails, String> upsertConnections(List<Map<String, String>> data) {
         Map<String, ConnectionDetails> connections = new LinkedHashMap<>();
         for (Map<String, String> row : data) {
             ConnectionDetails details = ConnectionDetails.getFromRow(row, getDelimiter());
@@ -95,8 +219,15 @@ public class DocumentationTemplateLoader extends AbstractLoader implements Reque
                 }
             }
         }
-        Map<ConnectionDetails, String> connectionCache =
-                ConnectionDetails.upsert(connections, getBatchSize(), isUpdateOnly());
+        return ConnectionDetails.upsert(knownConnections, connections, getBatchSize(), isUpdateOnly());
+    }
+
+    private void loadTabularAssets(List<Map<String, String>> data, Map<ConnectionDetails, String> connectionCache) {
+        log.info("Loading tabular assets from: {}::{}", getFilename(), TABULAR_SHEET);
+
+        // Fastest way will be to load in batches by level of the asset hierarchy,
+        // even though this means multiple passes over the data (it's all in-memory)
+        // (the connections will already have been upserted, as step 1)
 
         // 2. Create databases for each unique value in the Database column
         Map<String, DatabaseDetails> databases = new LinkedHashMap<>();
@@ -252,29 +383,13 @@ public class DocumentationTemplateLoader extends AbstractLoader implements Reque
         }
     }
 
-    public void processObjectStoreAssets(ExcelReader xlsx) throws IOException {
+    private void loadObjectStoreAssets(
+            List<Map<String, String>> data, Map<ConnectionDetails, String> connectionCache) {
         log.info("Loading object store assets from: {}::{}", getFilename(), OBJECT_SHEET);
 
-        List<Map<String, String>> data = xlsx.getRowsFromSheet(OBJECT_SHEET, 1);
-
         // Fastest way will be to load in batches by level of the asset hierarchy,
         // even though this means multiple passes over the data (it's all in-memory)
-
-        // 1. Upsert connections for each unique combination of values in the Connection columns
-        Map<String, ConnectionDetails> connections = new LinkedHashMap<>();
-        for (Map<String, String> row : data) {
-            ConnectionDetails details = ConnectionDetails.getFromRow(row, getDelimiter());
-            if (details != null) {
-                // Only overwrite any details about the connection if none previously existed
-                String identity = details.getIdentity();
-                ConnectionDetails existing = connections.get(identity);
-                if (existing == null || existing.isStub()) {
-                    connections.put(identity, details);
-                }
-            }
-        }
-        Map<ConnectionDetails, String> connectionCache =
-                ConnectionDetails.upsert(connections, getBatchSize(), isUpdateOnly());
+        // (the connections will already have been upserted, as step 1)
 
         // 2. Create accounts for each unique value in the Account column
         Map<String, AccountDetails> accounts = new LinkedHashMap<>();
@@ -359,17 +474,22 @@ public class DocumentationTemplateLoader extends AbstractLoader implements Reque
         }
     }
 
-    public void processLineage(ExcelReader xlsx) throws IOException {
-        log.info("Loading lineage from: {}::{}", getFilename(), LINEAGE_SHEET);
-
-        List<Map<String, String>> data = xlsx.getRowsFromSheet(LINEAGE_SHEET, 1);
-
-        // Fastest way will be to load in batches by level of the asset hierarchy,
-        // even though this means multiple passes over the data (it's all in-memory)
+    /**
+     * Upsert the connections for each unique orchestrator, and find the existing source and target connections
+     * for the lineage.
+     *
+     * @param data rows of lineage
+     * @return a mapping of connection headers to their qualifiedName (as created or found)
+     * @throws IOException on any problems reading the rows of lineage
+     */
+    private Map<ConnectionDetails, String> resolveLineageConnections(RowSource data) throws IOException {
+        log.info("Resolving lineage connections from: {}::{}", getFilename(), LINEAGE_SHEET);
 
-        // 1. Upsert connections for each unique orchestrator name
+        // Collect the (few) unique connections in a single pass over the (potentially very many) rows
         Map<String, ConnectionDetails> connections = new LinkedHashMap<>();
-        for (Map<String, String> row : data) {
+        Set<ConnectionDetails> sources = new LinkedHashSet<>();
+        Set<ConnectionDetails> targets = new LinkedHashSet<>();
+        data.forEach(row -> {
             ConnectionDetails details = LineageDetails.getOrchestratorFromRow(row);
             if (details != null) {
                 // Only overwrite any details about the connection if none previously existed
@@ -379,43 +499,60 @@ public class DocumentationTemplateLoader extends AbstractLoader implements Reque
                     connections.put(identity, details);
                 }
             }
-        }
-        Map<ConnectionDetails, String> connectionCache =
-                ConnectionDetails.upsert(connections, getBatchSize(), isUpdateOnly());
-
-        // 2. Add existing source and target connections into the cache
-        for (Map<String, String> row : data) {
             ConnectionDetails source = LineageDetails.getSourceConnectionFromRow(row);
             if (source != null) {
-                try {
-                    ConnectionDetails.findAndCache(connectionCache, source.getName(), source.getType());
-                } catch (AtlanException e) {
-                    log.error("Unable to find source connection: {}", source, e);
-                }
+                sources.add(source);
             }
             ConnectionDetails target = LineageDetails.getTargetConnectionFromRow(row);
             if (target != null) {
-                try {
-                    ConnectionDetails.findAndCache(connectionCache, target.getName(), target.getType());
-                } catch (AtlanException e) {
-                    log.error("Unable to find target connection: {}", target, e);
-                }
+                targets.add(target);
+            }
+        });
+
+        // 1. Upsert connections for each unique orchestrator name
+        Map<ConnectionDetails, String> connectionCache =
+                ConnectionDetails.upsert(knownConnections, connections, getBatchSize(), isUpdateOnly());
+
+        // 2. Add existing source and target connections into the cache
+        for (ConnectionDetails source : sources) {
+            try {
+                ConnectionDetails.findAndCache(connectionCache, source.getName(), source.getType());
+            } catch (AtlanException e) {
+                log.error("Unable to find source connection: {}", source, e);
             }
         }
+        for (ConnectionDetails target : targets) {
+            try {
+                ConnectionDetails.findAndCache(connectionCache, target.getName(), target.getType());
+            } catch (AtlanException e) {
+                log.error("Unable to find target connection: {}", target, e);
+            }
+        }
+        return connectionCache;
+    }
 
-        // 3. Build up map of unique processes, with all their input and output details,
-        //    and then bulk-upsert them
-        Map<String, Set<LineageDetails>> lineage = new LinkedHashMap<>();
-        for (Map<String, String> row : data) {
-            LineageDetails details = LineageDetails.getFromRow(connectionCache, row, getDelimiter());
-            if (details != null) {
-                String processQN = details.getProcessConnectionQualifiedName() + "/" + details.getProcessId();
-                if (!lineage.containsKey(processQN)) {
-                    lineage.put(processQN, new LinkedHashSet<>());
+    private void loadLineage(RowSource data, Map<ConnectionDetails, String> connectionCache) {
+        log.info("Loading lineage from: {}::{}", getFilename(), LINEAGE_SHEET);
+
+        // 3. Group the rows into unique processes, with all their input and output details,
+        //    and bulk-upsert each process as soon as all of its rows have been seen
+        //    (spilling rows to disk if there are too many to group in memory)
+        try (LineageGrouper grouper = new LineageGrouper(getBatchSize(), isLineageSorted())) {
+            data.forEach(row -> {
+                LineageDetails details = LineageDetails.getFromRow(connectionCache, row, getDelimiter());
+                if (details != null) {
+                    try {
+                        grouper.add(details);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
                 }
-                lineage.get(processQN).add(details);
-            }
+            });
+            grouper.finish();
+        } catch (IOException e) {
+            log.error("Unable to group lineage rows into processes.", e);
+        } catch (UncheckedIOException e) {
+            log.error("Unable to group lineage rows into processes.", e.getCause());
         }
-        LineageDetails.upsert(lineage, getBatchSize());
     }
 }
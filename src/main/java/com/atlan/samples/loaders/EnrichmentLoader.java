@@ -6,6 +6,7 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.atlan.samples.loaders.caches.CategoryCache;
 import com.atlan.samples.loaders.caches.GlossaryCache;
+import com.atlan.samples.loaders.caches.PersistentIdentityCache;
 import com.atlan.samples.loaders.caches.TermCache;
 import com.atlan.samples.loaders.models.AssetEnrichmentDetails;
 import com.atlan.samples.loaders.models.CategoryEnrichmentDetails;
@@ -72,8 +73,19 @@ public class EnrichmentLoader extends AbstractLoader implements RequestHandler<M
 
             ExcelReader xlsx = new ExcelReader(getFilename());
 
+            // 0. Warm the caches with any identities persisted from a previous run
+            PersistentIdentityCache identities = null;
+            GlossaryCache glossaryCache = new GlossaryCache();
+            CategoryCache categoryCache = new CategoryCache();
+            TermCache termCache = new TermCache();
+            if (getIdentityCache() != null) {
+                identities = PersistentIdentityCache.open(getIdentityCache(), getBatchSize());
+                identities.warm(PersistentIdentityCache.GLOSSARIES, glossaryCache);
+                identities.warm(PersistentIdentityCache.CATEGORIES, categoryCache);
+                identities.warm(PersistentIdentityCache.TERMS, termCache);
+            }
+
             // 1. Create glossaries for each row in the Glossary enrichment sheet
-            GlossaryCache glossaryCache;
             try {
                 List<Map<String, String>> glossaryData = xlsx.getRowsFromSheet(GLOSSARY_ENRICHMENT, 0);
                 log.info("Processing sheet {}, with {} rows.", GLOSSARY_ENRICHMENT, glossaryData.size());
@@ -89,15 +101,18 @@ public class EnrichmentLoader extends AbstractLoader implements RequestHandler<M
                         }
                     }
                 }
-                glossaryCache = GlossaryEnrichmentDetails.upsert(
-                        glossaries, getBatchSize(), REPLACE_CLASSIFICATIONS, REPLACE_CUSTOM_METADATA, isUpdateOnly());
+                GlossaryEnrichmentDetails.upsert(
+                        glossaryCache,
+                        glossaries,
+                        getBatchSize(),
+                        REPLACE_CLASSIFICATIONS,
+                        REPLACE_CUSTOM_METADATA,
+                        isUpdateOnly());
             } catch (IOException e) {
                 log.warn("Could not find sheet: {} — skipping.", GLOSSARY_ENRICHMENT);
-                glossaryCache = new GlossaryCache();
             }
 
             // 2. Create categories for each row in the Category enrichment sheet
-            CategoryCache categoryCache = new CategoryCache();
             try {
                 List<Map<String, String>> categoryData = xlsx.getRowsFromSheet(CATEGORY_ENRICHMENT, 0);
                 log.info("Processing sheet {}, with {} rows.", CATEGORY_ENRICHMENT, categoryData.size());
@@ -118,7 +133,6 @@ public class EnrichmentLoader extends AbstractLoader implements RequestHandler<M
                         categoryCache,
                         categories,
                         getBatchSize(),
-                        1,
                         REPLACE_CLASSIFICATIONS,
                         REPLACE_CUSTOM_METADATA,
                         isUpdateOnly());
@@ -127,7 +141,6 @@ public class EnrichmentLoader extends AbstractLoader implements RequestHandler<M
             }
 
             // 3. Create terms for each row in the Term enrichment sheet
-            TermCache termCache;
             try {
                 List<Map<String, String>> termData = xlsx.getRowsFromSheet(TERM_ENRICHMENT, 0);
                 log.info("Processing sheet {}, with {} rows.", TERM_ENRICHMENT, termData.size());
@@ -144,11 +157,15 @@ public class EnrichmentLoader extends AbstractLoader implements RequestHandler<M
                         }
                     }
                 }
-                termCache = TermEnrichmentDetails.upsert(
-                        terms, getBatchSize(), REPLACE_CLASSIFICATIONS, REPLACE_CUSTOM_METADATA, isUpdateOnly());
+                TermEnrichmentDetails.upsert(
+                        termCache,
+                        terms,
+                        getBatchSize(),
+                        REPLACE_CLASSIFICATIONS,
+                        REPLACE_CUSTOM_METADATA,
+                        isUpdateOnly());
             } catch (IOException e) {
                 log.warn("Could not find sheet: {} — skipping", TERM_ENRICHMENT);
-                termCache = new TermCache();
             }
 
             // 4. Create assets for each row in the Asset enrichment sheet
@@ -173,6 +190,18 @@ public class EnrichmentLoader extends AbstractLoader implements RequestHandler<M
                 log.warn("Could not find sheet: {} — skipping.", ASSET_ENRICHMENT);
             }
 
+            log.info("Glossary cache: {}", glossaryCache.getStats());
+            log.info("Category cache: {}", categoryCache.getStats());
+            log.info("Term cache: {}", termCache.getStats());
+
+            // 5. Persist the identities resolved in this run, for the next run
+            if (identities != null) {
+                identities.record(PersistentIdentityCache.GLOSSARIES, glossaryCache);
+                identities.record(PersistentIdentityCache.CATEGORIES, categoryCache);
+                identities.record(PersistentIdentityCache.TERMS, termCache);
+                identities.save();
+            }
+
         } catch (IOException e) {
             log.error("Failed to read Excel file from: {}", getFilename(), e);
             System.exit(1);
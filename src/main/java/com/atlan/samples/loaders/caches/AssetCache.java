@@ -3,15 +3,65 @@
 package com.atlan.samples.loaders.caches;
 
 import com.atlan.model.assets.Asset;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
 
 /**
  * Utility class for lazy-loading a cache of assets based on some human-constructable identity.
+ * The cache can safely be shared across threads: concurrent misses for the same identity (or the
+ * same load key, see {@link #getLoadKey(String)}) result in only a single lookup, the cache is
+ * bounded in size (evicting the least-recently used entries), and assets that could not be found
+ * are only remembered for a limited time.
  */
 public abstract class AssetCache {
 
-    private final Map<String, Asset> cache = new HashMap<>();
+    /** Default maximum number of entries to retain in the cache. */
+    public static final int DEFAULT_MAX_SIZE = 500_000;
+
+    /** Default time (in milliseconds) for which to remember that an asset could not be found. */
+    public static final long DEFAULT_NEGATIVE_TTL = TimeUnit.MINUTES.toMillis(5);
+
+    private final int maxSize;
+    private final long negativeTtl;
+
+    // Note: access-ordered, so that the eldest entry is always the least-recently used
+    private final LinkedHashMap<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private final Set<String> invalidated = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadTime = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a new cache using the default size and negative-entry TTL.
+     */
+    protected AssetCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_NEGATIVE_TTL);
+    }
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize maximum number of entries to retain in the cache
+     * @param negativeTtl time (in milliseconds) for which to remember that an asset could not be found
+     */
+    protected AssetCache(int maxSize, long negativeTtl) {
+        this.maxSize = maxSize;
+        this.negativeTtl = negativeTtl;
+    }
 
     /**
      * Retrieve an asset from the cache, lazily-loading it on any cache misses.
@@ -20,20 +70,103 @@ public abstract class AssetCache {
      * @return the asset with the specified identity
      */
     public Asset get(String identity) {
-        if (!cache.containsKey(identity)) {
-            cache.put(identity, lookupAsset(identity));
+        Entry entry = getEntry(identity);
+        if (entry != null) {
+            hits.increment();
+            return entry.getAsset();
+        }
+        misses.increment();
+        String loadKey = getLoadKey(identity);
+        CompletableFuture<Void> loading = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inFlight.putIfAbsent(loadKey, loading);
+        if (existing == null) {
+            try {
+                // Re-check, in case another thread completed a load in the meantime
+                if (getEntry(identity) == null) {
+                    long start = System.nanoTime();
+                    try {
+                        put(identity, lookupAsset(identity));
+                    } finally {
+                        loads.increment();
+                        loadTime.add(System.nanoTime() - start);
+                    }
+                }
+            } finally {
+                inFlight.remove(loadKey, loading);
+                loading.complete(null);
+            }
+        } else {
+            // Another thread is already loading this (or, for example, the whole glossary containing it)
+            existing.join();
         }
-        return cache.get(identity);
+        entry = getEntry(identity);
+        if (entry == null) {
+            // The load that was done did not find this asset, so remember that it does not exist
+            put(identity, null);
+            return null;
+        }
+        return entry.getAsset();
     }
 
     /**
      * Add an asset to the cache.
      *
      * @param identity of the asset to add to the cache
-     * @param asset the asset to add to the cache
+     * @param asset the asset to add to the cache (or null to record that there is no such asset)
      */
     public void put(String identity, Asset asset) {
-        cache.put(identity, asset);
+        synchronized (cache) {
+            cache.put(identity, new Entry(asset, getExpiry(asset)));
+            evictIfNeeded();
+        }
+    }
+
+    /**
+     * Add a number of assets to the cache at once.
+     *
+     * @param assets mapping from identity to the asset to add to the cache for that identity
+     */
+    public void putAll(Map<String, Asset> assets) {
+        synchronized (cache) {
+            for (Map.Entry<String, Asset> one : assets.entrySet()) {
+                cache.put(one.getKey(), new Entry(one.getValue(), getExpiry(one.getValue())));
+            }
+            evictIfNeeded();
+        }
+    }
+
+    /**
+     * Remove an asset from the cache, because it is known to no longer be valid (for example, it no longer
+     * exists in Atlan). Any later retrieval of the identity will look it up again.
+     *
+     * @param identity of the asset to remove from the cache
+     */
+    public void invalidate(String identity) {
+        synchronized (cache) {
+            Entry removed = cache.remove(identity);
+            invalidated.add(identity);
+            if (removed != null && removed.getAsset() != null) {
+                onRemoved(identity);
+            }
+        }
+    }
+
+    /**
+     * Retrieve the identities that have been invalidated, and not cached again since.
+     *
+     * @return the identities that are known to no longer be valid
+     */
+    public Set<String> getInvalidated() {
+        synchronized (cache) {
+            Set<String> identities = new HashSet<>();
+            for (String identity : invalidated) {
+                Entry entry = cache.get(identity);
+                if (entry == null || entry.getAsset() == null) {
+                    identities.add(identity);
+                }
+            }
+            return identities;
+        }
     }
 
     /**
@@ -43,7 +176,83 @@ public abstract class AssetCache {
      * @return true if this identity is already in the cache, false otherwise
      */
     public boolean containsKey(String identity) {
-        return cache.containsKey(identity);
+        return getEntry(identity) != null;
+    }
+
+    /**
+     * Retrieve the number of entries currently in the cache.
+     *
+     * @return the number of entries in the cache
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Retrieve a copy of all the assets currently in the cache (excluding any that could not be found).
+     *
+     * @return mapping from identity to asset, for every asset in the cache
+     */
+    public Map<String, Asset> snapshot() {
+        Map<String, Asset> assets = new LinkedHashMap<>();
+        synchronized (cache) {
+            for (Map.Entry<String, Entry> one : cache.entrySet()) {
+                if (one.getValue().getAsset() != null) {
+                    assets.put(one.getKey(), one.getValue().getAsset());
+                }
+            }
+        }
+        return assets;
+    }
+
+    /**
+     * Retrieve statistics about the usage of the cache so far.
+     *
+     * @return the cache's statistics
+     */
+    public Stats getStats() {
+        return Stats.builder()
+                .size(size())
+                .hits(hits.sum())
+                .misses(misses.sum())
+                .loads(loads.sum())
+                .loadTimeMillis(TimeUnit.NANOSECONDS.toMillis(loadTime.sum()))
+                .evictions(evictions.sum())
+                .build();
+    }
+
+    /**
+     * Retrieve the time (in milliseconds) for which this cache remembers that an asset could not be found.
+     *
+     * @return the negative-entry TTL, in milliseconds
+     */
+    protected long getNegativeTtl() {
+        return negativeTtl;
+    }
+
+    /**
+     * Retrieve the key under which to coalesce concurrent lookups for an identity. By default, this
+     * is the identity itself — but caches whose lookups load many assets at once (for example, an
+     * entire glossary) can override this so that only a single such load is ever in-flight.
+     *
+     * @param identity of the asset to lookup
+     * @return the key under which concurrent lookups should be coalesced
+     */
+    protected String getLoadKey(String identity) {
+        return identity;
+    }
+
+    /**
+     * Called whenever an asset is removed from the cache, whether it was evicted to keep the cache within its
+     * maximum size or invalidated, so that caches which track what they have loaded can forget it.
+     * Note: this is called while holding the cache's lock, so must be quick and must not use the cache itself.
+     *
+     * @param identity of the asset that was removed from the cache
+     */
+    protected void onRemoved(String identity) {
+        // Nothing to do by default
     }
 
     /**
@@ -53,4 +262,68 @@ public abstract class AssetCache {
      * @return the asset, from Atlan itself
      */
     protected abstract Asset lookupAsset(String identity);
+
+    private Entry getEntry(String identity) {
+        synchronized (cache) {
+            Entry entry = cache.get(identity);
+            if (entry != null && entry.getExpiresAt() < System.currentTimeMillis()) {
+                cache.remove(identity);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private long getExpiry(Asset asset) {
+        return asset == null ? System.currentTimeMillis() + negativeTtl : Long.MAX_VALUE;
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Entry>> eldest = cache.entrySet().iterator();
+        while (cache.size() > maxSize && eldest.hasNext()) {
+            Map.Entry<String, Entry> evicted = eldest.next();
+            eldest.remove();
+            evictions.increment();
+            if (evicted.getValue().getAsset() != null) {
+                onRemoved(evicted.getKey());
+            }
+        }
+    }
+
+    @Getter
+    private static final class Entry {
+        private final Asset asset;
+        private final long expiresAt;
+
+        Entry(Asset asset, long expiresAt) {
+            this.asset = asset;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Statistics about the usage of a cache.
+     */
+    @Getter
+    @Builder
+    @ToString
+    public static final class Stats {
+        /** Number of entries in the cache. */
+        private final int size;
+
+        /** Number of retrievals answered directly from the cache. */
+        private final long hits;
+
+        /** Number of retrievals that were not answered directly from the cache. */
+        private final long misses;
+
+        /** Number of lookups made against Atlan. */
+        private final long loads;
+
+        /** Total time spent on lookups against Atlan, in milliseconds. */
+        private final long loadTimeMillis;
+
+        /** Number of entries evicted to keep the cache within its maximum size. */
+        private final long evictions;
+    }
 }
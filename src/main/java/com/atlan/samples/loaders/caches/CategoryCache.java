@@ -6,49 +6,74 @@ import com.atlan.exception.AtlanException;
 import com.atlan.exception.NotFoundException;
 import com.atlan.model.assets.Asset;
 import com.atlan.model.assets.Glossary;
-import com.atlan.model.assets.GlossaryCategory;
 import com.atlan.model.assets.IGlossaryCategory;
 import com.atlan.samples.loaders.models.CategoryEnrichmentDetails;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class CategoryCache extends AssetCache {
 
+    // Glossaries (by name) whose entire hierarchy has been loaded, and when
+    private final Map<String, Long> loadedGlossaries = new ConcurrentHashMap<>();
+
+    /**
+     * {@inheritDoc}
+     * Since a lookup loads the entire hierarchy of a glossary, lookups are coalesced by glossary.
+     */
+    @Override
+    protected String getLoadKey(String identity) {
+        return CategoryEnrichmentDetails.getGlossaryNameFromIdentity(identity);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Once any category of a glossary has been removed, the glossary is no longer known to be fully loaded
+     * (so a miss for one of its categories will load the glossary's hierarchy again).
+     */
+    @Override
+    protected void onRemoved(String identity) {
+        loadedGlossaries.remove(CategoryEnrichmentDetails.getGlossaryNameFromIdentity(identity));
+    }
+
     /** {@inheritDoc} */
+    @Override
     protected Asset lookupAsset(String identity) {
         String glossaryName = CategoryEnrichmentDetails.getGlossaryNameFromIdentity(identity);
+        Long loadedAt = loadedGlossaries.get(glossaryName);
+        if (loadedAt != null && System.currentTimeMillis() - loadedAt < getNegativeTtl()) {
+            // We have already (recently) loaded every category in this glossary, and any categories
+            // created since are added to the cache directly, so there is no such category
+            return null;
+        }
         try {
             // Since there can be multiple categories with the same name, and building up an
             // entire category path is a recursive operation, it'll likely be best if we just
             // bulk-load the entire hierarchy from a glossary for caching purposes
-            Asset foundCategory = null;
+            Map<String, Asset> categories = new HashMap<>();
             Glossary glossary = Glossary.findByName(glossaryName, List.of("name"));
             Glossary.CategoryHierarchy hierarchy = glossary.getHierarchy(List.of("anchor"));
-            for (IGlossaryCategory category : hierarchy.breadthFirst()) {
-                String categoryPath = getCategoryPath(hierarchy, category);
+            List<? extends IGlossaryCategory> all = hierarchy.breadthFirst();
+            GlossaryHierarchyIndex index = new GlossaryHierarchyIndex(all);
+            for (IGlossaryCategory category : all) {
+                String categoryPath = index.getPath(category.getGuid());
                 String categoryId = CategoryEnrichmentDetails.getIdentity(categoryPath, glossary);
-                put(categoryId, (Asset) category);
-                if (categoryId.equals(identity)) {
-                    foundCategory = (Asset) category;
-                }
+                categories.put(categoryId, (Asset) category);
             }
-            return foundCategory;
+            // Mark the glossary as loaded before caching its categories, in case caching them evicts any of them
+            loadedGlossaries.put(glossaryName, System.currentTimeMillis());
+            putAll(categories);
+            return categories.get(identity);
         } catch (NotFoundException e) {
             log.info("No existing categories found in glossary: {}", glossaryName);
+            // There are no categories to load, which is just as complete an answer as loading them all
+            loadedGlossaries.put(glossaryName, System.currentTimeMillis());
         } catch (AtlanException e) {
             log.error("Unable to lookup or find category: {}", identity, e);
         }
         return null;
     }
-
-    private String getCategoryPath(Glossary.CategoryHierarchy hierarchy, IGlossaryCategory category) {
-        String parentPath = null;
-        if (category.getParentCategory() != null) {
-            GlossaryCategory parent =
-                    hierarchy.getCategory(category.getParentCategory().getGuid());
-            parentPath = getCategoryPath(hierarchy, parent);
-        }
-        return parentPath == null ? category.getName() : parentPath + "@" + category.getName();
-    }
 }
@@ -0,0 +1,101 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+/* Copyright 2023 Atlan Pte. Ltd. */
+package com.atlan.samples.loaders.caches;
+
+import com.atlan.model.assets.IGlossaryCategory;
+import java.util.*;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Index over the category hierarchy of one (or more) glossaries, built once from a bulk fetch of the categories.
+ * Every category's full path (its ancestors' names and its own, separated by '@') is resolved when the index is
+ * built, each exactly once — so that resolving the paths of all categories takes linear time, however deep the
+ * hierarchy. Once built, the index is read-only and can be shared across threads.
+ */
+@Slf4j
+public class GlossaryHierarchyIndex {
+
+    public static final String PATH_SEPARATOR = "@";
+
+    private final Map<String, String> names = new HashMap<>();
+    private final Map<String, String> parents = new HashMap<>();
+    private final Map<String, String> paths = new HashMap<>();
+    private final Map<String, String> guidsByPath = new HashMap<>();
+
+    /**
+     * Build an index over the provided categories.
+     *
+     * @param categories every category in the hierarchy, each with at least its name and parent category
+     */
+    public GlossaryHierarchyIndex(Collection<? extends IGlossaryCategory> categories) {
+        for (IGlossaryCategory category : categories) {
+            names.put(category.getGuid(), category.getName());
+            IGlossaryCategory parent = category.getParentCategory();
+            if (parent != null && parent.getGuid() != null) {
+                parents.put(category.getGuid(), parent.getGuid());
+            }
+        }
+        for (String guid : names.keySet()) {
+            resolvePath(guid);
+        }
+        for (Map.Entry<String, String> entry : paths.entrySet()) {
+            guidsByPath.putIfAbsent(entry.getValue(), entry.getKey());
+        }
+    }
+
+    /**
+     * Retrieve the full path of a category.
+     *
+     * @param guid of the category
+     * @return the full path of the category, or null if the category is not in the index
+     */
+    public String getPath(String guid) {
+        return paths.get(guid);
+    }
+
+    /**
+     * Retrieve the GUID of the category at a given path.
+     *
+     * @param path full path of the category
+     * @return the GUID of the category, or null if there is no category at that path
+     */
+    public String getGuid(String path) {
+        return guidsByPath.get(path);
+    }
+
+    /**
+     * Retrieve the full paths of all the categories in the index.
+     *
+     * @return a mapping from category GUID to its full path
+     */
+    public Map<String, String> getPaths() {
+        return Collections.unmodifiableMap(paths);
+    }
+
+    /**
+     * Resolve the path of a category, walking up only as far as its nearest ancestor whose path is already
+     * known — and recording the path of every category along the way.
+     *
+     * @param guid of the category
+     */
+    private void resolvePath(String guid) {
+        Deque<String> chain = new ArrayDeque<>();
+        Set<String> onChain = new HashSet<>();
+        String current = guid;
+        while (current != null && names.containsKey(current) && !paths.containsKey(current)) {
+            if (!onChain.add(current)) {
+                log.warn("Category hierarchy contains a cycle at {} — treating it as a root category.", current);
+                break;
+            }
+            chain.push(current);
+            current = parents.get(current);
+        }
+        // Note: a parent that is not in the index (for example, archived) is treated as if it were the root
+        String path = current == null ? null : paths.get(current);
+        while (!chain.isEmpty()) {
+            String next = chain.pop();
+            path = path == null ? names.get(next) : path + PATH_SEPARATOR + names.get(next);
+            paths.put(next, path);
+        }
+    }
+}
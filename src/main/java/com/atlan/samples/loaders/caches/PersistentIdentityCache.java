@@ -0,0 +1,518 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+/* Copyright 2023 Atlan Pte. Ltd. */
+package com.atlan.samples.loaders.caches;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.atlan.Atlan;
+import com.atlan.exception.AtlanException;
+import com.atlan.model.assets.*;
+import com.atlan.model.enums.AtlanStatus;
+import com.atlan.model.search.FluentSearch;
+import com.atlan.samples.loaders.models.CategoryEnrichmentDetails;
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.reader.CsvRow;
+import de.siegmar.fastcsv.writer.CsvWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Utility class for persisting the identities of assets (identity → GUID, qualifiedName) across loader runs,
+ * in a local file. When opened, the cache is validated against Atlan with a single search for any of the cached
+ * assets that have changed since the cache was last saved — any that have been deleted or renamed (or, for
+ * categories, possibly moved) are dropped, along with any identities that depend on them (categories beneath a
+ * changed category, and categories and terms within a changed glossary). Since purged assets leave nothing to
+ * find in such a search, any identity found to no longer exist while loading is dropped when the cache is saved,
+ * and (at most once per day) the remaining identities are also confirmed to still exist (in pages, by GUID).
+ * The remaining identities can then be used to warm the other caches, so that they need not be looked up again.
+ */
+@Slf4j
+public class PersistentIdentityCache {
+
+    public static final String GLOSSARIES = "glossary";
+    public static final String CATEGORIES = "category";
+    public static final String TERMS = "term";
+    public static final String CONNECTIONS = "connection";
+
+    private static final String WATERMARK = "#watermark";
+    private static final String VERIFIED = "#verified";
+
+    /** Margin by which to move back the watermark, for changes not yet searchable when the run started. */
+    private static final long WATERMARK_LAG = TimeUnit.MINUTES.toMillis(1);
+
+    /** Minimum time between confirming that every cached identity still exists (rather than only what changed). */
+    private static final long EXISTENCE_CHECK_INTERVAL = TimeUnit.DAYS.toMillis(1);
+
+    /** Minimum number of identities to confirm still exist with each search. */
+    private static final int MIN_EXISTENCE_CHECK = 500;
+
+    private final Path location;
+    private final long openedAt;
+    private long verifiedAt;
+    private final Map<String, Map<String, Entry>> entries = new ConcurrentHashMap<>();
+
+    private PersistentIdentityCache(Path location) {
+        this.location = location;
+        this.openedAt = System.currentTimeMillis();
+        // Until read otherwise, every identity is only cached from what is found in Atlan during this run
+        this.verifiedAt = openedAt;
+    }
+
+    /**
+     * Open (and validate) the persistent identity cache at the provided location. If there is no file yet at that
+     * location, the cache will start out empty.
+     *
+     * @param location of the file in which the identities are persisted
+     * @param batchSize page size to use when validating the cached identities
+     * @return the persistent identity cache
+     */
+    public static PersistentIdentityCache open(String location, int batchSize) {
+        PersistentIdentityCache cache = new PersistentIdentityCache(Paths.get(location));
+        long watermark = cache.read();
+        if (watermark > 0) {
+            cache.validate(watermark, batchSize);
+        }
+        return cache;
+    }
+
+    /**
+     * Add all the cached identities of the specified kind to the provided asset cache.
+     *
+     * @param name of the kind of identities (for example, {@link #TERMS})
+     * @param cache to warm with the cached identities
+     */
+    public void warm(String name, AssetCache cache) {
+        Map<String, Asset> assets = new HashMap<>();
+        for (Entry entry : getEntries(name).values()) {
+            assets.put(entry.getIdentity(), entry.toAsset());
+        }
+        cache.putAll(assets);
+        log.info("Warmed {} cache with {} persisted identities.", name, assets.size());
+    }
+
+    /**
+     * Retrieve the qualifiedNames of all the cached identities of the specified kind.
+     *
+     * @param name of the kind of identities (for example, {@link #CONNECTIONS})
+     * @return a mapping from identity to qualifiedName
+     */
+    public Map<String, String> getQualifiedNames(String name) {
+        Map<String, String> qualifiedNames = new HashMap<>();
+        for (Entry entry : getEntries(name).values()) {
+            qualifiedNames.put(entry.getIdentity(), entry.getQualifiedName());
+        }
+        return qualifiedNames;
+    }
+
+    /**
+     * Record all the assets (that were found) in the provided asset cache, so they can be persisted.
+     *
+     * @param name of the kind of identities (for example, {@link #TERMS})
+     * @param cache from which to record the identities
+     */
+    public void record(String name, AssetCache cache) {
+        Map<String, Entry> recorded = getEntries(name);
+        // Drop anything found to no longer be valid during the run (for example, because it no longer exists)
+        recorded.keySet().removeAll(cache.getInvalidated());
+        for (Map.Entry<String, Asset> one : cache.snapshot().entrySet()) {
+            Asset asset = one.getValue();
+            if (asset.getGuid() != null && !asset.getGuid().startsWith("-") && asset.getQualifiedName() != null) {
+                recorded.put(one.getKey(), new Entry(one.getKey(), asset));
+            }
+        }
+    }
+
+    /**
+     * Record the qualifiedNames of the provided identities, so they can be persisted.
+     *
+     * @param name of the kind of identities (for example, {@link #CONNECTIONS})
+     * @param typeName of all the assets identified
+     * @param qualifiedNames mapping from identity to qualifiedName
+     */
+    public void record(String name, String typeName, Map<String, String> qualifiedNames) {
+        Map<String, Entry> recorded = getEntries(name);
+        for (Map.Entry<String, String> one : qualifiedNames.entrySet()) {
+            if (one.getValue() != null) {
+                recorded.put(
+                        one.getKey(), new Entry(one.getKey(), typeName, null, one.getValue(), null, null, 0L));
+            }
+        }
+    }
+
+    /**
+     * Persist all the identities that have been recorded to the file.
+     */
+    public void save() {
+        Path tmp = location.resolveSibling(location.getFileName() + ".tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(tmp, UTF_8);
+                    CsvWriter csv = CsvWriter.builder().build(out)) {
+                // Note: the watermark is (a margin before) when this run started, so that anything changed
+                // during the run (after it was cached), or just before it but not yet searchable, will be
+                // checked the next time the cache is opened
+                csv.writeRow(WATERMARK, String.valueOf(Math.max(0, openedAt - WATERMARK_LAG)));
+                csv.writeRow(VERIFIED, String.valueOf(verifiedAt));
+                for (Map.Entry<String, Map<String, Entry>> kind : entries.entrySet()) {
+                    for (Entry entry : kind.getValue().values()) {
+                        csv.writeRow(
+                                kind.getKey(),
+                                entry.getIdentity(),
+                                entry.getTypeName(),
+                                protectFromNull(entry.getGuid()),
+                                entry.getQualifiedName(),
+                                protectFromNull(entry.getName()),
+                                protectFromNull(entry.getAnchorGuid()),
+                                String.valueOf(entry.getUpdateTime()));
+                    }
+                }
+            }
+            Files.move(tmp, location, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Persisted identity cache to: {}", location);
+        } catch (IOException e) {
+            log.error("Unable to persist identity cache to: {}", location, e);
+        }
+    }
+
+    private Map<String, Entry> getEntries(String name) {
+        return entries.computeIfAbsent(name, k -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Read all the identities from the file, if it exists.
+     *
+     * @return the watermark (epoch-style time) as of which the identities were cached, or 0 if there are none
+     */
+    private long read() {
+        if (!Files.isRegularFile(location)) {
+            log.info("No existing identity cache found at {} — starting with an empty cache.", location);
+            return 0;
+        }
+        long watermark = 0;
+        // Note: a cache saved before existence checks were recorded has never had its identities confirmed
+        verifiedAt = 0;
+        try (CsvReader csv = CsvReader.builder().skipEmptyRows(true).build(location, UTF_8)) {
+            for (CsvRow row : csv) {
+                if (row.getFieldCount() == 2 && WATERMARK.equals(row.getField(0))) {
+                    watermark = Long.parseLong(row.getField(1));
+                } else if (row.getFieldCount() == 2 && VERIFIED.equals(row.getField(0))) {
+                    verifiedAt = Long.parseLong(row.getField(1));
+                } else if (row.getFieldCount() == 8) {
+                    Entry entry = new Entry(
+                            row.getField(1),
+                            row.getField(2),
+                            emptyToNull(row.getField(3)),
+                            row.getField(4),
+                            emptyToNull(row.getField(5)),
+                            emptyToNull(row.getField(6)),
+                            Long.parseLong(row.getField(7)));
+                    getEntries(row.getField(0)).put(entry.getIdentity(), entry);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Unable to read identity cache from {} — starting with an empty cache.", location, e);
+            entries.clear();
+            verifiedAt = openedAt;
+            return 0;
+        }
+        return watermark;
+    }
+
+    /**
+     * Drop any cached identities for assets that have been deleted, renamed (or for categories, possibly moved)
+     * since the provided watermark, and any identities that depend on them. Identities for assets that have been
+     * purged are only looked for periodically, as that needs a search for every cached identity.
+     *
+     * @param watermark (epoch-style time) as of which the identities were cached
+     * @param batchSize page size to use when searching for changes
+     */
+    private void validate(long watermark, int batchSize) {
+        Map<String, List<Entry>> byQualifiedName = new HashMap<>();
+        Set<String> typeNames = new TreeSet<>();
+        for (Map<String, Entry> kind : entries.values()) {
+            for (Entry entry : kind.values()) {
+                byQualifiedName
+                        .computeIfAbsent(entry.getQualifiedName(), k -> new ArrayList<>())
+                        .add(entry);
+                typeNames.add(entry.getTypeName());
+            }
+        }
+        if (typeNames.isEmpty()) {
+            return;
+        }
+        Set<Entry> stale = ConcurrentHashMap.newKeySet();
+        try {
+            Atlan.getDefaultClient()
+                    .assets
+                    .select(true)
+                    .where(FluentSearch.assetTypes(new ArrayList<>(typeNames)))
+                    .where(Asset.UPDATE_TIME.gt(watermark))
+                    .pageSize(batchSize)
+                    .includeOnResults(Asset.NAME)
+                    .stream()
+                    .forEach(changed -> {
+                        List<Entry> cached = byQualifiedName.get(changed.getQualifiedName());
+                        if (cached != null) {
+                            for (Entry entry : cached) {
+                                if (entry.isStale(changed)) {
+                                    stale.add(entry);
+                                }
+                            }
+                        }
+                    });
+            if (openedAt - verifiedAt >= EXISTENCE_CHECK_INTERVAL) {
+                log.info("Confirming that every cached identity still exists (last confirmed at {}).", verifiedAt);
+                stale.addAll(findMissing(stale, Math.max(batchSize, MIN_EXISTENCE_CHECK)));
+                verifiedAt = openedAt;
+            }
+        } catch (AtlanException e) {
+            log.warn("Unable to validate the identity cache against Atlan — starting with an empty cache.", e);
+            entries.clear();
+            verifiedAt = openedAt;
+            return;
+        }
+        int direct = stale.size();
+        stale.addAll(findDependents(stale));
+        for (Map<String, Entry> kind : entries.values()) {
+            kind.values().removeIf(stale::contains);
+        }
+        log.info(
+                "Validated identity cache against changes since {} — invalidated {} identities (and {} that depend on them).",
+                watermark,
+                direct,
+                stale.size() - direct);
+    }
+
+    /**
+     * Find any cached identities (not already known to be stale) whose assets no longer exist in Atlan,
+     * for example because they have been purged.
+     *
+     * @param stale identities already known to be stale
+     * @param pageSize number of identities to confirm with each search
+     * @return the identities whose assets no longer exist
+     * @throws AtlanException on any problems searching for the assets
+     */
+    private Set<Entry> findMissing(Set<Entry> stale, int pageSize) throws AtlanException {
+        Map<String, List<Entry>> byGuid = new LinkedHashMap<>();
+        Map<String, List<Entry>> byQualifiedName = new LinkedHashMap<>();
+        for (Map<String, Entry> kind : entries.values()) {
+            for (Entry entry : kind.values()) {
+                if (!stale.contains(entry)) {
+                    if (entry.getGuid() != null) {
+                        byGuid.computeIfAbsent(entry.getGuid(), k -> new ArrayList<>())
+                                .add(entry);
+                    } else {
+                        byQualifiedName
+                                .computeIfAbsent(entry.getQualifiedName(), k -> new ArrayList<>())
+                                .add(entry);
+                    }
+                }
+            }
+        }
+        List<String> guids = new ArrayList<>(byGuid.keySet());
+        for (int i = 0; i < guids.size(); i += pageSize) {
+            List<String> page = guids.subList(i, Math.min(i + pageSize, guids.size()));
+            Atlan.getDefaultClient()
+                    .assets
+                    .select()
+                    .where(Asset.GUID.in(page))
+                    .pageSize(page.size())
+                    .stream()
+                    .forEach(found -> byGuid.remove(found.getGuid()));
+        }
+        List<String> qualifiedNames = new ArrayList<>(byQualifiedName.keySet());
+        for (int i = 0; i < qualifiedNames.size(); i += pageSize) {
+            List<String> page = qualifiedNames.subList(i, Math.min(i + pageSize, qualifiedNames.size()));
+            Atlan.getDefaultClient()
+                    .assets
+                    .select()
+                    .where(Asset.QUALIFIED_NAME.in(page))
+                    .pageSize(page.size())
+                    .stream()
+                    .forEach(found -> byQualifiedName.remove(found.getQualifiedName()));
+        }
+        // Anything that was not found (as an active asset) no longer exists
+        Set<Entry> missing = new HashSet<>();
+        byGuid.values().forEach(missing::addAll);
+        byQualifiedName.values().forEach(missing::addAll);
+        return missing;
+    }
+
+    /**
+     * Find any cached identities that are built from the identities of the provided stale assets: the
+     * categories beneath a stale category (whose paths include it), and the categories and terms within
+     * a stale glossary (whose identities include its name).
+     *
+     * @param stale identities already known to be stale
+     * @return the identities that depend on any of the stale identities
+     */
+    private Set<Entry> findDependents(Set<Entry> stale) {
+        Set<String> glossaryGuids = new HashSet<>();
+        // Paths of the stale categories, keyed by the name of the glossary they are in
+        Map<String, Set<String>> categoryPaths = new HashMap<>();
+        for (Entry entry : stale) {
+            if (Glossary.TYPE_NAME.equals(entry.getTypeName()) && entry.getGuid() != null) {
+                glossaryGuids.add(entry.getGuid());
+            } else if (GlossaryCategory.TYPE_NAME.equals(entry.getTypeName())) {
+                categoryPaths
+                        .computeIfAbsent(
+                                CategoryEnrichmentDetails.getGlossaryNameFromIdentity(entry.getIdentity()),
+                                k -> new HashSet<>())
+                        .add(CategoryEnrichmentDetails.getPathFromIdentity(entry.getIdentity()));
+            }
+        }
+        Set<Entry> dependents = new HashSet<>();
+        for (String name : List.of(CATEGORIES, TERMS)) {
+            for (Entry entry : getEntries(name).values()) {
+                if (glossaryGuids.contains(entry.getAnchorGuid())
+                        || (CATEGORIES.equals(name) && isBeneath(entry.getIdentity(), categoryPaths))) {
+                    dependents.add(entry);
+                }
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * Check whether the category with the provided identity is beneath any of the provided categories.
+     *
+     * @param identity of the category
+     * @param categoryPaths paths of the categories to check, keyed by the name of the glossary they are in
+     * @return true if any of the category's ancestors is one of the provided categories
+     */
+    private static boolean isBeneath(String identity, Map<String, Set<String>> categoryPaths) {
+        Set<String> paths = categoryPaths.get(CategoryEnrichmentDetails.getGlossaryNameFromIdentity(identity));
+        String path = CategoryEnrichmentDetails.getPathFromIdentity(identity);
+        if (paths != null && path != null) {
+            // Check each ancestor's path in turn, from the immediate parent upwards
+            int idx = path.lastIndexOf('@');
+            while (idx > 0) {
+                if (paths.contains(path.substring(0, idx))) {
+                    return true;
+                }
+                idx = path.lastIndexOf('@', idx - 1);
+            }
+        }
+        return false;
+    }
+
+    private static String protectFromNull(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * A single persisted identity.
+     */
+    @Getter
+    private static final class Entry {
+        private final String identity;
+        private final String typeName;
+        private final String guid;
+        private final String qualifiedName;
+        private final String name;
+        private final String anchorGuid;
+        private final long updateTime;
+
+        Entry(
+                String identity,
+                String typeName,
+                String guid,
+                String qualifiedName,
+                String name,
+                String anchorGuid,
+                long updateTime) {
+            this.identity = identity;
+            this.typeName = typeName;
+            this.guid = guid;
+            this.qualifiedName = qualifiedName;
+            this.name = name;
+            this.anchorGuid = anchorGuid;
+            this.updateTime = updateTime;
+        }
+
+        Entry(String identity, Asset asset) {
+            this(
+                    identity,
+                    asset.getTypeName(),
+                    asset.getGuid(),
+                    asset.getQualifiedName(),
+                    asset.getName(),
+                    anchorGuidOf(asset),
+                    asset.getUpdateTime() == null ? 0L : asset.getUpdateTime());
+        }
+
+        /**
+         * Whether this identity can no longer be trusted, given the current state of the asset in Atlan.
+         *
+         * @param current state of the asset in Atlan
+         * @return true if the identity should no longer be used
+         */
+        boolean isStale(Asset current) {
+            if (current.getUpdateTime() != null && current.getUpdateTime() <= updateTime) {
+                // We have already cached it as of this change
+                return false;
+            }
+            return current.getStatus() != AtlanStatus.ACTIVE
+                    || !Objects.equals(name, current.getName())
+                    // A category's identity depends on its position in the hierarchy, not only its name
+                    || GlossaryCategory.TYPE_NAME.equals(typeName);
+        }
+
+        /**
+         * Construct a minimal asset for this identity, with enough detail to be used as a reference.
+         *
+         * @return a minimal asset
+         */
+        Asset toAsset() {
+            if (Glossary.TYPE_NAME.equals(typeName)) {
+                return Glossary._internal()
+                        .guid(guid)
+                        .qualifiedName(qualifiedName)
+                        .name(name)
+                        .build();
+            } else if (GlossaryCategory.TYPE_NAME.equals(typeName)) {
+                GlossaryCategory.GlossaryCategoryBuilder<?, ?> builder =
+                        GlossaryCategory._internal().guid(guid).qualifiedName(qualifiedName).name(name);
+                if (anchorGuid != null) {
+                    builder = builder.anchor(Glossary.refByGuid(anchorGuid));
+                }
+                return builder.build();
+            } else if (GlossaryTerm.TYPE_NAME.equals(typeName)) {
+                GlossaryTerm.GlossaryTermBuilder<?, ?> builder =
+                        GlossaryTerm._internal().guid(guid).qualifiedName(qualifiedName).name(name);
+                if (anchorGuid != null) {
+                    builder = builder.anchor(Glossary.refByGuid(anchorGuid));
+                }
+                return builder.build();
+            } else {
+                return IndistinctAsset._internal()
+                        .typeName(typeName)
+                        .guid(guid)
+                        .qualifiedName(qualifiedName)
+                        .name(name)
+                        .build();
+            }
+        }
+
+        private static String anchorGuidOf(Asset asset) {
+            if (asset instanceof GlossaryCategory && ((GlossaryCategory) asset).getAnchor() != null) {
+                return ((GlossaryCategory) asset).getAnchor().getGuid();
+            } else if (asset instanceof GlossaryTerm && ((GlossaryTerm) asset).getAnchor() != null) {
+                return ((GlossaryTerm) asset).getAnchor().getGuid();
+            }
+            return null;
+        }
+    }
+}
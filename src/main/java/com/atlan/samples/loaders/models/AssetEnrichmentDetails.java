@@ -217,6 +217,8 @@ public class AssetEnrichmentDetails extends EnrichmentDetails {
         }
 
         // Then go through and create any of the READMEs linked to these assets...
+        // (skipping any whose content is unchanged from what already exists)
+        readmes.keySet().removeAll(getUnchangedReadmes(readmes, assetIdentityToResult::get, batchSize));
         try {
             AssetBatch readmeBatch = new AssetBatch(Atlan.getDefaultClient(), Readme.TYPE_NAME, batchSize);
             for (Map.Entry<String, String> entry : readmes.entrySet()) {
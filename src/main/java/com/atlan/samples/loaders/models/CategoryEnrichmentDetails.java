@@ -4,6 +4,7 @@ package com.atlan.samples.loaders.models;
 
 import com.atlan.Atlan;
 import com.atlan.exception.AtlanException;
+import com.atlan.exception.NotFoundException;
 import com.atlan.model.assets.Asset;
 import com.atlan.model.assets.GlossaryCategory;
 import com.atlan.model.assets.Readme;
@@ -13,6 +14,13 @@ import com.atlan.samples.loaders.caches.CategoryCache;
 import com.atlan.samples.loaders.caches.GlossaryCache;
 import com.atlan.util.AssetBatch;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -133,11 +141,13 @@ public class CategoryEnrichmentDetails extends EnrichmentDetails {
 
     /**
      * Create categories in bulk, if they do not exist, or update them if they do (idempotent).
+     * Categories are scheduled by their dependencies rather than strictly level-by-level: a category
+     * becomes eligible for upsert as soon as its parent category has been resolved, and each
+     * glossary's hierarchy is processed concurrently with those of other glossaries.
      *
      * @param categoryCache a cache of categories
      * @param categories the set of categories to ensure exist
      * @param batchSize maximum number of categories to create per batch
-     * @param level of categories to create
      * @param replaceClassifications if true, the classifications in the spreadsheet will overwrite all existing classifications on the asset; otherwise they will only be appended
      * @param replaceCM if true, the custom metadata in the spreadsheet will overwrite all custom metadata on the asset; otherwise only the attributes with values will be updated
      * @param updateOnly if true, only attempt to update existing assets, otherwise allow assets to be created as well
@@ -146,132 +156,52 @@ public class CategoryEnrichmentDetails extends EnrichmentDetails {
             CategoryCache categoryCache,
             Map<String, CategoryEnrichmentDetails> categories,
             int batchSize,
-            int level,
             boolean replaceClassifications,
             boolean replaceCM,
             boolean updateOnly) {
-        Map<String, String> readmes = new HashMap<>();
-        Map<String, Map<String, CustomMetadataAttributes>> cmToUpdate = new HashMap<>();
-        Map<String, CategoryEnrichmentDetails> leftovers = new LinkedHashMap<>();
+        Map<String, String> readmes = new ConcurrentHashMap<>();
+        Map<String, Map<String, CustomMetadataAttributes>> cmToUpdate = new ConcurrentHashMap<>();
 
-        // Note that we need to do this in multiple passes, so parent categories are always
-        // created before children, and we won't really be able to batch them due to
-        // the hierarchical nature of the categories...
-        Set<String> bulkInitialized = new HashSet<>();
-        long localCount = 0;
-        long totalResults = categories.size();
+        // Categories in one glossary can never be the parent of categories in another glossary,
+        // so each glossary's hierarchy can be scheduled entirely independently of the others
+        Map<String, Map<String, CategoryEnrichmentDetails>> byGlossary = new LinkedHashMap<>();
         for (CategoryEnrichmentDetails details : categories.values()) {
-            if (!bulkInitialized.contains(details.getGlossary().getQualifiedName())) {
-                // If we've not yet initialized the cache, then bulk-initialize it now (only once per glossary)
-                categoryCache.get(details.getIdentity());
-                bulkInitialized.add(details.getGlossary().getQualifiedName());
+            byGlossary
+                    .computeIfAbsent(details.getGlossary().getQualifiedName(), k -> new LinkedHashMap<>())
+                    .put(details.getIdentity(), details);
+        }
+
+        AtomicLong count = new AtomicLong(0);
+        long totalResults = categories.size();
+        int parallelism = Math.max(1, Math.min(byGlossary.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<?>> inProgress = new ArrayList<>();
+            for (Map<String, CategoryEnrichmentDetails> inGlossary : byGlossary.values()) {
+                inProgress.add(executor.submit(() -> upsertHierarchy(
+                        categoryCache,
+                        inGlossary,
+                        batchSize,
+                        replaceClassifications,
+                        replaceCM,
+                        updateOnly,
+                        readmes,
+                        cmToUpdate,
+                        count,
+                        totalResults)));
             }
-            Asset glossary = details.getGlossary();
-            String categoryPath = details.getCategoryPath();
-            String[] tokens = categoryPath.split(Pattern.quote("@"));
-            if (tokens.length == level) {
-                String categoryName = tokens[tokens.length - 1];
-                GlossaryCategory.GlossaryCategoryBuilder<?, ?> builder = null;
-                // Explicitly check key first, to avoid any further cache re-initialization
-                // given its bulk nature
-                if (!categoryCache.containsKey(details.getIdentity())
-                        || categoryCache.get(details.getIdentity()) == null) {
-                    if (updateOnly) {
-                        log.warn(
-                                "Unable to find existing category — skipping: {}@{}", categoryName, glossary.getName());
-                    } else {
-                        builder = GlossaryCategory.creator(categoryName, glossary.getGuid());
-                    }
-                } else {
-                    builder = ((GlossaryCategory) categoryCache.get(details.getIdentity())).toBuilder();
+            for (Future<?> glossary : inProgress) {
+                try {
+                    glossary.get();
+                } catch (ExecutionException e) {
+                    log.error("Unable to upsert the categories of a glossary.", e.getCause());
                 }
-                if (builder != null) {
-                    builder = builder.description(details.getDescription())
-                            .userDescription(details.getUserDescription())
-                            .certificateStatus(details.getCertificate())
-                            .certificateStatusMessage(details.getCertificateStatusMessage())
-                            .announcementType(details.getAnnouncementType())
-                            .announcementTitle(details.getAnnouncementTitle())
-                            .announcementMessage(details.getAnnouncementMessage())
-                            .ownerUsers(details.getOwnerUsers())
-                            .ownerGroups(details.getOwnerGroups());
-                    if (details.getCustomMetadataValues() != null) {
-                        builder = builder.customMetadataSets(details.getCustomMetadataValues());
-                    }
-                    if (tokens.length > 1) {
-                        // If there are multiple tokens, there is a hierarchy to construct
-                        String parentPath = categoryPath.substring(0, categoryPath.lastIndexOf("@"));
-                        String parentName;
-                        if (parentPath.contains("@")) {
-                            parentName = parentPath.substring(parentPath.lastIndexOf("@") + 1);
-                        } else {
-                            parentName = parentPath;
-                        }
-                        String parentIdentity = getIdentity(parentPath, glossary);
-                        Asset parent = categoryCache.get(parentIdentity);
-                        if (parent != null) {
-                            builder = builder.parentCategory(GlossaryCategory.refByGuid(parent.getGuid()));
-                        } else {
-                            log.error(
-                                    "Parent category {} in glossary {} not defined in spreadsheet — cannot create {} as a child of this category.",
-                                    parentName,
-                                    glossary.getName(),
-                                    categoryName);
-                        }
-                    }
-                    GlossaryCategory category = builder.build();
-                    try {
-                        // TODO: matching on name alone has very minor risk of a collision as it is not strictly unique
-                        AssetMutationResponse response = replaceCM
-                                ? category.saveReplacingCM(replaceClassifications)
-                                : category.saveMergingCM(replaceClassifications);
-                        if (response != null) {
-                            localCount++;
-                            log.info(
-                                    " ... processed {}/{} ({}%)",
-                                    localCount, totalResults, Math.round(((double) localCount / totalResults) * 100));
-                            List<Asset> created = response.getCreatedAssets();
-                            if (created != null) {
-                                for (Asset one : created) {
-                                    if (one instanceof GlossaryCategory
-                                            && one.getName().equals(categoryName)) {
-                                        categoryCache.put(details.getIdentity(), one);
-                                    }
-                                }
-                            }
-                            List<Asset> updated = response.getUpdatedAssets();
-                            if (updated != null) {
-                                for (Asset one : updated) {
-                                    if (one instanceof GlossaryCategory
-                                            && one.getName().equals(categoryName)) {
-                                        categoryCache.put(details.getIdentity(), one);
-                                    }
-                                }
-                            }
-                        }
-                        if (!categoryCache.containsKey(details.getIdentity())) {
-                            // If it was a no-op because nothing changed, pass-through the category we already found
-                            categoryCache.put(details.getIdentity(), category);
-                        }
-                    } catch (AtlanException e) {
-                        log.error("Unable to upsert category: {}", details.getIdentity(), e);
-                    }
-                    if (!replaceCM && !details.getCustomMetadataValues().isEmpty()) {
-                        // Note that the GUID is only resolved after the asset is
-                        // created (or updated) above
-                        Asset resolved = categoryCache.get(details.getIdentity());
-                        if (resolved != null) {
-                            cmToUpdate.put(resolved.getGuid(), details.getCustomMetadataValues());
-                        }
-                    }
-                    String readmeContents = details.getReadme();
-                    if (readmeContents != null && !readmeContents.isEmpty()) {
-                        readmes.put(details.getIdentity(), readmeContents);
-                    }
-                }
-            } else {
-                leftovers.put(details.getIdentity(), details);
             }
+        } catch (InterruptedException e) {
+            log.error("Interrupted while waiting for categories to be upserted.", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
         }
 
         // If we did not replace custom metadata, it must be selectively updated one-by-one
@@ -280,6 +210,8 @@ public class CategoryEnrichmentDetails extends EnrichmentDetails {
         }
 
         // Then go through and create any the READMEs linked to these assets...
+        // (skipping any whose content is unchanged from what already exists)
+        readmes.keySet().removeAll(getUnchangedReadmes(readmes, categoryCache::get, batchSize));
         try {
             AssetBatch readmeBatch = new AssetBatch(Atlan.getDefaultClient(), Readme.TYPE_NAME, batchSize);
             for (Map.Entry<String, String> entry : readmes.entrySet()) {
@@ -297,10 +229,274 @@ public class CategoryEnrichmentDetails extends EnrichmentDetails {
         } catch (AtlanException e) {
             log.error("Unable to bulk-upsert READMEs for categories.", e);
         }
+    }
 
-        // And then recurse on the leftovers...
-        if (!leftovers.isEmpty()) {
-            upsert(categoryCache, leftovers, batchSize, level + 1, replaceClassifications, replaceCM, updateOnly);
+    /**
+     * Upsert all the categories of a single glossary. On each pass, every category whose parent has
+     * already been resolved (or whose parent is not itself waiting to be upserted) is submitted in
+     * bulk, so that independent subtrees progress together rather than one category at a time.
+     * Any category whose upsert fails is reported along with every category beneath it, which are
+     * skipped rather than created without their parent.
+     *
+     * @param categoryCache a cache of categories
+     * @param categories the categories (all within the same glossary) to ensure exist
+     * @param batchSize maximum number of categories to create per batch
+     * @param replaceClassifications if true, the classifications in the spreadsheet will overwrite all existing classifications on the asset; otherwise they will only be appended
+     * @param replaceCM if true, the custom metadata in the spreadsheet will overwrite all custom metadata on the asset; otherwise only the attributes with values will be updated
+     * @param updateOnly if true, only attempt to update existing assets, otherwise allow assets to be created as well
+     * @param readmes into which to capture any README content to add to the categories (keyed by category identity)
+     * @param cmToUpdate into which to capture any custom metadata to selectively update (keyed by category GUID)
+     * @param count running count of categories processed (across all glossaries)
+     * @param totalResults total number of categories to be processed (across all glossaries)
+     */
+    private static void upsertHierarchy(
+            CategoryCache categoryCache,
+            Map<String, CategoryEnrichmentDetails> categories,
+            int batchSize,
+            boolean replaceClassifications,
+            boolean replaceCM,
+            boolean updateOnly,
+            Map<String, String> readmes,
+            Map<String, Map<String, CustomMetadataAttributes>> cmToUpdate,
+            AtomicLong count,
+            long totalResults) {
+        Map<String, CategoryEnrichmentDetails> pending = new LinkedHashMap<>(categories);
+        if (!pending.isEmpty()) {
+            // Bulk-initialize the cache for this glossary (only once)
+            categoryCache.get(pending.keySet().iterator().next());
         }
+        // Identities of the categories that could not be upserted (including those beneath them)
+        Set<String> failed = new HashSet<>();
+        while (!pending.isEmpty()) {
+            List<CategoryEnrichmentDetails> eligible = new ArrayList<>();
+            Iterator<CategoryEnrichmentDetails> it = pending.values().iterator();
+            while (it.hasNext()) {
+                CategoryEnrichmentDetails details = it.next();
+                String parentPath = getParentPath(details.getCategoryPath());
+                String parentIdentity = parentPath == null ? null : getIdentity(parentPath, details.getGlossary());
+                if (parentIdentity != null && failed.contains(parentIdentity)) {
+                    log.error(
+                            "Parent category {} in glossary {} could not be upserted — skipping: {}",
+                            parentPath,
+                            details.getGlossary().getName(),
+                            details.getCategoryPath());
+                    failed.add(details.getIdentity());
+                    it.remove();
+                } else if (parentIdentity == null || !pending.containsKey(parentIdentity)) {
+                    eligible.add(details);
+                }
+            }
+            if (eligible.isEmpty()) {
+                // Only categories beneath those skipped above remain, and they will be skipped on the next pass
+                continue;
+            }
+            AssetBatch batch = new AssetBatch(
+                    Atlan.getDefaultClient(),
+                    GlossaryCategory.TYPE_NAME,
+                    batchSize,
+                    replaceClassifications,
+                    replaceCM
+                            ? AssetBatch.CustomMetadataHandling.OVERWRITE
+                            : AssetBatch.CustomMetadataHandling.MERGE);
+            // Track what was submitted by its (possibly placeholder) GUID, so that the GUIDs
+            // assigned by Atlan can be mapped back to each category's identity
+            Map<String, CategoryEnrichmentDetails> submitted = new HashMap<>();
+            Map<String, GlossaryCategory> built = new HashMap<>();
+            // Categories that were submitted (and not since found to have failed), keyed by identity
+            Map<String, CategoryEnrichmentDetails> attempted = new LinkedHashMap<>();
+            // Categories that were deliberately not submitted (as opposed to having failed)
+            Set<String> skipped = new HashSet<>();
+            try {
+                for (CategoryEnrichmentDetails details : eligible) {
+                    GlossaryCategory category = buildCategory(categoryCache, details, updateOnly);
+                    if (category == null) {
+                        skipped.add(details.getIdentity());
+                    } else {
+                        submitted.put(category.getGuid(), details);
+                        attempted.put(details.getIdentity(), details);
+                        built.put(category.getGuid(), category);
+                        cacheResults(categoryCache, batch.add(category), submitted, built, count, totalResults);
+                    }
+                }
+                cacheResults(categoryCache, batch.flush(), submitted, built, count, totalResults);
+            } catch (NotFoundException e) {
+                // At least one of the existing categories we had cached no longer exists, so look them
+                // all up again rather than passing them through below
+                log.error("Unable to find existing categories to bulk-upsert — dropping them from the cache.", e);
+                submitted.entrySet().removeIf(entry -> {
+                    boolean existing = !entry.getKey().startsWith("-");
+                    if (existing) {
+                        categoryCache.invalidate(entry.getValue().getIdentity());
+                        attempted.remove(entry.getValue().getIdentity());
+                    }
+                    return existing;
+                });
+            } catch (AtlanException e) {
+                log.error("Unable to bulk-upsert categories.", e);
+            }
+            for (Map.Entry<String, CategoryEnrichmentDetails> entry : submitted.entrySet()) {
+                if (!entry.getKey().startsWith("-")) {
+                    // If it was a no-op because nothing changed, pass-through the category we already found
+                    categoryCache.put(entry.getValue().getIdentity(), built.get(entry.getKey()));
+                    count.incrementAndGet();
+                } else {
+                    // Never created (for example, the batch failed), so there is nothing to look up
+                    attempted.remove(entry.getValue().getIdentity());
+                }
+            }
+            for (CategoryEnrichmentDetails details : eligible) {
+                pending.remove(details.getIdentity());
+                if (!attempted.containsKey(details.getIdentity()) && !skipped.contains(details.getIdentity())) {
+                    // Either its upsert failed, or it was never submitted because the batch failed first
+                    failed.add(details.getIdentity());
+                }
+            }
+            // Only look up the categories that were actually upserted: any that were skipped or failed
+            // are not in the cache, so looking them up would only reload the entire glossary
+            for (CategoryEnrichmentDetails details : attempted.values()) {
+                Asset resolved = categoryCache.get(details.getIdentity());
+                if (resolved != null) {
+                    if (!replaceCM && !details.getCustomMetadataValues().isEmpty()) {
+                        // Note that the GUID is only resolved after the asset is
+                        // created (or updated) above
+                        cmToUpdate.put(resolved.getGuid(), details.getCustomMetadataValues());
+                    }
+                    String readmeContents = details.getReadme();
+                    if (readmeContents != null && !readmeContents.isEmpty()) {
+                        readmes.put(details.getIdentity(), readmeContents);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the category to upsert from the provided details.
+     *
+     * @param categoryCache a cache of categories
+     * @param details of the category to build
+     * @param updateOnly if true, only attempt to update existing assets, otherwise allow assets to be created as well
+     * @return the category to upsert, or null if it should be skipped
+     */
+    private static GlossaryCategory buildCategory(
+            CategoryCache categoryCache, CategoryEnrichmentDetails details, boolean updateOnly) {
+        Asset glossary = details.getGlossary();
+        String categoryPath = details.getCategoryPath();
+        String[] tokens = categoryPath.split(Pattern.quote("@"));
+        String categoryName = tokens[tokens.length - 1];
+        GlossaryCategory.GlossaryCategoryBuilder<?, ?> builder = null;
+        // Explicitly check key first, to avoid any further cache re-initialization
+        // given its bulk nature
+        if (!categoryCache.containsKey(details.getIdentity()) || categoryCache.get(details.getIdentity()) == null) {
+            if (updateOnly) {
+                log.warn("Unable to find existing category — skipping: {}@{}", categoryName, glossary.getName());
+            } else {
+                // Use an explicit placeholder GUID, so the category can be matched up again in the bulk response
+                builder = GlossaryCategory.creator(categoryName, glossary.getGuid())
+                        .guid("-" + ThreadLocalRandom.current().nextLong(0, Long.MAX_VALUE - 1));
+            }
+        } else {
+            builder = ((GlossaryCategory) categoryCache.get(details.getIdentity())).toBuilder();
+        }
+        if (builder == null) {
+            return null;
+        }
+        builder = builder.description(details.getDescription())
+                .userDescription(details.getUserDescription())
+                .certificateStatus(details.getCertificate())
+                .certificateStatusMessage(details.getCertificateStatusMessage())
+                .announcementType(details.getAnnouncementType())
+                .announcementTitle(details.getAnnouncementTitle())
+                .announcementMessage(details.getAnnouncementMessage())
+                .ownerUsers(details.getOwnerUsers())
+                .ownerGroups(details.getOwnerGroups());
+        if (details.getCustomMetadataValues() != null) {
+            builder = builder.customMetadataSets(details.getCustomMetadataValues());
+        }
+        String parentPath = getParentPath(categoryPath);
+        if (parentPath != null) {
+            // If there is a parent path, there is a hierarchy to construct
+            Asset parent = categoryCache.get(getIdentity(parentPath, glossary));
+            if (parent != null) {
+                builder = builder.parentCategory(GlossaryCategory.refByGuid(parent.getGuid()));
+            } else {
+                String parentName = parentPath.contains("@")
+                        ? parentPath.substring(parentPath.lastIndexOf("@") + 1)
+                        : parentPath;
+                log.error(
+                        "Parent category {} in glossary {} not defined in spreadsheet — cannot create {} as a child of this category.",
+                        parentName,
+                        glossary.getName(),
+                        categoryName);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Cache the categories from a bulk upsert, mapping them back to their identities by the GUIDs
+     * that were submitted.
+     *
+     * @param categoryCache a cache of categories
+     * @param response from the bulk upsert
+     * @param submitted details of the categories submitted, keyed by the GUID with which they were submitted (removed once resolved)
+     * @param built the categories submitted, keyed by the GUID with which they were submitted
+     * @param count running count of categories processed
+     * @param totalResults total number of categories to be processed
+     */
+    private static void cacheResults(
+            CategoryCache categoryCache,
+            AssetMutationResponse response,
+            Map<String, CategoryEnrichmentDetails> submitted,
+            Map<String, GlossaryCategory> built,
+            AtomicLong count,
+            long totalResults) {
+        if (response != null) {
+            Map<String, Asset> results = new HashMap<>();
+            List<Asset> created = response.getCreatedAssets();
+            if (created != null) {
+                for (Asset one : created) {
+                    results.put(one.getGuid(), one);
+                }
+            }
+            List<Asset> updated = response.getUpdatedAssets();
+            if (updated != null) {
+                for (Asset one : updated) {
+                    results.put(one.getGuid(), one);
+                }
+            }
+            for (Map.Entry<String, String> entry : response.getGuidAssignments().entrySet()) {
+                CategoryEnrichmentDetails details = submitted.remove(entry.getKey());
+                if (details != null) {
+                    Asset result = results.get(entry.getValue());
+                    if (result == null) {
+                        // If it was a no-op because nothing changed, pass-through the category we submitted
+                        result = built.get(entry.getKey()).toBuilder()
+                                .guid(entry.getValue())
+                                .build();
+                    }
+                    categoryCache.put(details.getIdentity(), result);
+                    long localCount = count.incrementAndGet();
+                    if (localCount % 100 == 0 || localCount == totalResults) {
+                        log.info(
+                                " ... processed {}/{} ({}%)",
+                                localCount, totalResults, Math.round(((double) localCount / totalResults) * 100));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Retrieve the path of a category's parent from the category's own path.
+     *
+     * @param path of the category
+     * @return the path of the category's parent, or null if the category is at the root of the glossary
+     */
+    private static String getParentPath(String path) {
+        if (path != null && path.contains("@")) {
+            return path.substring(0, path.lastIndexOf("@"));
+        }
+        return null;
     }
 }
@@ -91,8 +91,8 @@ public class ColumnDetails extends AssetDetails {
                     .primaryKey(getBoolean(row.get(COL_COLUMN_PK)))
                     .foreignKey(getBoolean(row.get(COL_COLUMN_FK)));
             String rawType = row.get(COL_COLUMN_TYPE);
-            String rawTypeOnly = DataTypeMapper.getTypeOnly(rawType);
-            String mappedType = DataTypeMapper.getMappedType(rawTypeOnly);
+            DataTypeMapper.SqlType sqlType = DataTypeMapper.parse(rawType);
+            String mappedType = sqlType == null ? null : sqlType.getMappedType();
             if (rawType != null && !rawType.isEmpty()) {
                 builder = builder.rawType(rawType);
             }
@@ -172,17 +172,17 @@ public class ColumnDetails extends AssetDetails {
                             .dataType(mappedType)
                             .isPrimary(details.getPrimaryKey())
                             .isForeign(details.getForeignKey());
-                    Long maxLength = DataTypeMapper.getMaxLength(rawType);
-                    Integer precision = DataTypeMapper.getPrecision(rawType);
-                    Double scale = DataTypeMapper.getScale(rawType);
-                    if (maxLength != null) {
-                        builder = builder.maxLength(maxLength);
-                    }
-                    if (precision != null) {
-                        builder = builder.precision(precision);
-                    }
-                    if (scale != null) {
-                        builder = builder.numericScale(scale);
+                    DataTypeMapper.SqlType sqlType = DataTypeMapper.parse(rawType);
+                    if (sqlType != null) {
+                        if (sqlType.getMaxLength() != null) {
+                            builder = builder.maxLength(sqlType.getMaxLength());
+                        }
+                        if (sqlType.getPrecision() != null) {
+                            builder = builder.precision(sqlType.getPrecision());
+                        }
+                        if (sqlType.getScale() != null) {
+                            builder = builder.numericScale(sqlType.getScale());
+                        }
                     }
                     Column column = builder.build();
                     if (!details.getAtlanTags().isEmpty()) {
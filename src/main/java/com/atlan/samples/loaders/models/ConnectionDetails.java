@@ -150,8 +150,25 @@ public class ConnectionDetails extends AssetDetails {
      */
     public static Map<ConnectionDetails, String> upsert(
             Map<String, ConnectionDetails> connections, int batchSize, boolean updateOnly) {
+        return upsert(new HashMap<>(), connections, batchSize, updateOnly);
+    }
+
+    /**
+     * Create connections in bulk, if they do not exist, or simply cache them if they do (idempotent).
+     *
+     * @param cache of connections already known (for example, from a previous run), to which any others will be added
+     * @param connections details of the connections to create
+     * @param batchSize maximum number of connections to create per batch
+     * @param updateOnly if true, only attempt to update existing assets, otherwise allow assets to be created as well
+     * @return the mapping of connection headers to their qualifiedName (as created or found)
+     */
+    public static Map<ConnectionDetails, String> upsert(
+            Map<ConnectionDetails, String> cache,
+            Map<String, ConnectionDetails> connections,
+            int batchSize,
+            boolean updateOnly) {
 
-        Map<ConnectionDetails, String> cache = new HashMap<>();
+        Set<ConnectionDetails> processed = new HashSet<>();
         long totalResults = connections.size();
         long localCount = 0;
 
@@ -166,7 +183,7 @@ public class ConnectionDetails extends AssetDetails {
                 AtlanConnectorType type = details.getType();
                 ConnectionDetails header = getHeader(name, type);
                 // Only continue if we have not already processed this connection...
-                if (!cache.containsKey(header)) {
+                if (processed.add(header)) {
                     try {
                         findAndCache(cache, name, type);
                         Connection toUpdate = Connection.updater(cache.get(header), name)
@@ -262,11 +279,14 @@ public class ConnectionDetails extends AssetDetails {
         }
 
         // 3. Retrieve each connection in turn to ensure async permissions have been set for them
-        for (String qualifiedName : cache.values()) {
-            try {
-                Connection.get(Atlan.getDefaultClient(), qualifiedName, false);
-            } catch (AtlanException e) {
-                log.error("Unable to access connection: {}", qualifiedName, e);
+        for (ConnectionDetails header : processed) {
+            String qualifiedName = cache.get(header);
+            if (qualifiedName != null) {
+                try {
+                    Connection.get(Atlan.getDefaultClient(), qualifiedName, false);
+                } catch (AtlanException e) {
+                    log.error("Unable to access connection: {}", qualifiedName, e);
+                }
             }
         }
         return cache;
@@ -296,6 +316,21 @@ public class ConnectionDetails extends AssetDetails {
         }
     }
 
+    /**
+     * Add a connection that is already known (for example, from a previous run) to the cache.
+     *
+     * @param cache to which to add the connection details
+     * @param identity of the connection (see {@link #getIdentity()})
+     * @param qualifiedName of the connection
+     */
+    public static void addToCache(Map<ConnectionDetails, String> cache, String identity, String qualifiedName) {
+        if (identity != null && identity.contains("/")) {
+            String type = identity.substring(0, identity.indexOf("/"));
+            String name = identity.substring(identity.indexOf("/") + 1);
+            cache.put(getHeader(name, AtlanConnectorType.fromValue(type)), qualifiedName);
+        }
+    }
+
     private static void cacheConnections(Map<ConnectionDetails, String> cache, AssetMutationResponse response) {
         if (response != null) {
             // If any assets were created, then cache these newly-created connections
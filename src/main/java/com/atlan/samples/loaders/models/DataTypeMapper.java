@@ -5,6 +5,9 @@ package com.atlan.samples.loaders.models;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.Getter;
+import lombok.ToString;
 
 /**
  * Utility class to convert data types for columns.
@@ -17,6 +20,37 @@ public class DataTypeMapper {
     /** Mappings from one type to another. */
     private static final Map<String, String> typeMap = Map.ofEntries(Map.entry("NVARCHAR", "VARCHAR"));
 
+    /** Maximum number of distinct SQL type strings to retain once parsed. */
+    private static final int MAX_INTERNED = 10_000;
+
+    /** SQL type strings that have already been parsed, so each distinct type string is only ever parsed once. */
+    private static final Map<String, SqlType> interned = new ConcurrentHashMap<>();
+
+    /**
+     * Parse the provided SQL type string into its component parts. Each distinct type string is
+     * only parsed once, and malformed type strings never cause an exception: any part that cannot
+     * be parsed is simply left empty (null).
+     *
+     * @param sqlType to parse, for example {@code NVARCHAR(255)} or {@code DECIMAL(10, 2)}
+     * @return the parsed type, or null if no type string was provided
+     */
+    public static SqlType parse(String sqlType) {
+        if (sqlType == null) {
+            return null;
+        }
+        SqlType parsed = interned.get(sqlType);
+        if (parsed == null) {
+            parsed = new SqlType(sqlType);
+            if (interned.size() < MAX_INTERNED) {
+                SqlType existing = interned.putIfAbsent(sqlType, parsed);
+                if (existing != null) {
+                    parsed = existing;
+                }
+            }
+        }
+        return parsed;
+    }
+
     /**
      * Retrieve the mapped data type for the provided type, or null if there is no mapped type (for spurious types).
      *
@@ -42,14 +76,8 @@ public class DataTypeMapper {
      * @return the type name (alone), or null if none could be found
      */
     public static String getTypeOnly(String sqlType) {
-        if (sqlType != null) {
-            if (sqlType.contains("(")) {
-                return sqlType.substring(0, sqlType.indexOf("(")).trim().toUpperCase(Locale.ROOT);
-            } else {
-                return sqlType.toUpperCase(Locale.ROOT);
-            }
-        }
-        return null;
+        SqlType parsed = parse(sqlType);
+        return parsed == null ? null : parsed.getBaseType();
     }
 
     /**
@@ -59,17 +87,8 @@ public class DataTypeMapper {
      * @return the maximum length, or null if none could be found
      */
     public static Long getMaxLength(String sqlType) {
-        if (sqlType != null) {
-            if (sqlType.contains("(") && !sqlType.contains(",")) {
-                String length = sqlType.substring(sqlType.indexOf("(") + 1, sqlType.indexOf(")"))
-                        .trim();
-                // TODO: should probably make this more general by catching a format exception...
-                if (!length.equals("MAX")) {
-                    return Long.parseLong(length);
-                }
-            }
-        }
-        return null;
+        SqlType parsed = parse(sqlType);
+        return parsed == null ? null : parsed.getMaxLength();
     }
 
     /**
@@ -79,14 +98,8 @@ public class DataTypeMapper {
      * @return the precision, or null if none could be found
      */
     public static Integer getPrecision(String sqlType) {
-        if (sqlType != null) {
-            if (sqlType.contains("(") && sqlType.contains(",")) {
-                String precision = sqlType.substring(sqlType.indexOf("(") + 1, sqlType.indexOf(","))
-                        .trim();
-                return Integer.parseInt(precision);
-            }
-        }
-        return null;
+        SqlType parsed = parse(sqlType);
+        return parsed == null ? null : parsed.getPrecision();
     }
 
     /**
@@ -96,13 +109,95 @@ public class DataTypeMapper {
      * @return the scale, or null if none could be found
      */
     public static Double getScale(String sqlType) {
-        if (sqlType != null) {
-            if (sqlType.contains("(") && sqlType.contains(",")) {
-                String scale = sqlType.substring(sqlType.indexOf(",") + 1, sqlType.indexOf(")"))
-                        .trim();
-                return Double.parseDouble(scale);
+        SqlType parsed = parse(sqlType);
+        return parsed == null ? null : parsed.getScale();
+    }
+
+    /**
+     * Immutable description of a SQL type string, broken down into its component parts.
+     */
+    @Getter
+    @ToString
+    public static final class SqlType {
+
+        /** The original SQL type string. */
+        private final String rawType;
+
+        /** Only the type name (upper-cased), without any length, precision or scale. */
+        private final String baseType;
+
+        /** The data type to which the type name maps, or null if it is a spurious type. */
+        private final String mappedType;
+
+        /** The maximum length defined by the type, if any. */
+        private final Long maxLength;
+
+        /** The precision defined by the type, if any. */
+        private final Integer precision;
+
+        /** The scale defined by the type, if any. */
+        private final Double scale;
+
+        private SqlType(String rawType) {
+            this.rawType = rawType;
+            // Single pass to find the (first) opening parenthesis, (first) comma within it, and closing parenthesis
+            int open = -1;
+            int comma = -1;
+            int close = -1;
+            for (int i = 0; i < rawType.length() && close < 0; i++) {
+                char c = rawType.charAt(i);
+                if (c == '(' && open < 0) {
+                    open = i;
+                } else if (c == ',' && open >= 0 && comma < 0) {
+                    comma = i;
+                } else if (c == ')' && open >= 0) {
+                    close = i;
+                }
+            }
+            String base = open < 0 ? rawType : rawType.substring(0, open);
+            this.baseType = base.trim().toUpperCase(Locale.ROOT);
+            this.mappedType = getMappedType(baseType);
+            if (open < 0) {
+                this.maxLength = null;
+                this.precision = null;
+                this.scale = null;
+            } else {
+                int end = close < 0 ? rawType.length() : close;
+                if (comma < 0) {
+                    this.maxLength = parseLong(rawType.substring(open + 1, end));
+                    this.precision = null;
+                    this.scale = null;
+                } else {
+                    this.maxLength = null;
+                    this.precision = parseInteger(rawType.substring(open + 1, comma));
+                    this.scale = parseDouble(rawType.substring(comma + 1, end));
+                }
+            }
+        }
+
+        private static Long parseLong(String value) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                // For example, MAX
+                return null;
+            }
+        }
+
+        private static Integer parseInteger(String value) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static Double parseDouble(String value) {
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                return null;
             }
         }
-        return null;
     }
 }
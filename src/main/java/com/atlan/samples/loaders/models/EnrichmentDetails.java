@@ -4,9 +4,12 @@ package com.atlan.samples.loaders.models;
 
 import com.atlan.Atlan;
 import com.atlan.exception.AtlanException;
+import com.atlan.model.assets.Asset;
+import com.atlan.model.assets.IReadme;
 import com.atlan.model.core.CustomMetadataAttributes;
 import com.atlan.model.typedefs.AttributeDef;
 import java.util.*;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -99,4 +102,56 @@ public abstract class EnrichmentDetails extends AssetDetails {
         }
         return cmMap;
     }
+
+    /**
+     * Determine which of the provided READMEs already exist in Atlan with exactly the same content,
+     * so that they can be skipped rather than re-written on every load. Existing READMEs are retrieved
+     * in bulk (one search per batch of assets), and their content compared directly.
+     *
+     * @param readmes mapping from asset identity to the README content that should exist for that asset
+     * @param resolver to translate an asset identity into the (resolved) asset in Atlan
+     * @param batchSize maximum number of assets to look up per search
+     * @return the set of asset identities whose README content is unchanged
+     */
+    protected static Set<String> getUnchangedReadmes(
+            Map<String, String> readmes, Function<String, Asset> resolver, int batchSize) {
+        Map<String, String> guidToIdentity = new HashMap<>();
+        for (String identity : readmes.keySet()) {
+            Asset asset = resolver.apply(identity);
+            if (asset != null && asset.getGuid() != null && !asset.getGuid().startsWith("-")) {
+                guidToIdentity.put(asset.getGuid(), identity);
+            }
+        }
+        Set<String> unchanged = new HashSet<>();
+        List<String> guids = new ArrayList<>(guidToIdentity.keySet());
+        for (int i = 0; i < guids.size(); i += batchSize) {
+            List<String> page = guids.subList(i, Math.min(i + batchSize, guids.size()));
+            try {
+                Atlan.getDefaultClient()
+                        .assets
+                        .select()
+                        .where(Asset.GUID.in(page))
+                        .pageSize(batchSize)
+                        .includeOnResults(Asset.README)
+                        .includeOnRelations(Asset.DESCRIPTION)
+                        .stream()
+                        .forEach(asset -> {
+                            String identity = guidToIdentity.get(asset.getGuid());
+                            IReadme existing = asset.getReadme();
+                            if (identity != null
+                                    && existing != null
+                                    && existing.getDescription() != null
+                                    && existing.getDescription().equals(readmes.get(identity))) {
+                                unchanged.add(identity);
+                            }
+                        });
+            } catch (AtlanException e) {
+                log.warn("Unable to look up existing READMEs — these will all be (re-)written.", e);
+            }
+        }
+        if (!unchanged.isEmpty()) {
+            log.info("Skipping {} of {} READMEs whose content is unchanged.", unchanged.size(), readmes.size());
+        }
+        return unchanged;
+    }
 }
@@ -90,28 +90,49 @@ public class GlossaryEnrichmentDetails extends EnrichmentDetails {
             boolean replaceClassifications,
             boolean replaceCM,
             boolean updateOnly) {
+        return upsert(new GlossaryCache(), glossaries, batchSize, replaceClassifications, replaceCM, updateOnly);
+    }
+
+    /**
+     * Create glossaries in bulk, if they do not exist, or update them if they do (idempotent).
+     *
+     * @param glossaryNameToResult a cache of glossaries, which may already contain (some of) the glossaries
+     * @param glossaries the set of glossaries to ensure exist
+     * @param batchSize maximum number of glossaries to create per batch
+     * @param replaceClassifications if true, the classifications in the spreadsheet will overwrite all existing classifications on the asset; otherwise they will only be appended
+     * @param replaceCM if true, the custom metadata in the spreadsheet will overwrite all custom metadata on the asset; otherwise only the attributes with values will be updated
+     * @param updateOnly if true, only attempt to update existing assets, otherwise allow assets to be created as well
+     * @return the cache of glossaries
+     */
+    public static GlossaryCache upsert(
+            GlossaryCache glossaryNameToResult,
+            Map<String, GlossaryEnrichmentDetails> glossaries,
+            int batchSize,
+            boolean replaceClassifications,
+            boolean replaceCM,
+            boolean updateOnly) {
         Map<String, String> readmes = new HashMap<>();
         Map<String, Map<String, CustomMetadataAttributes>> cmToUpdate = new HashMap<>();
-        GlossaryCache glossaryNameToResult = new GlossaryCache();
 
         int localCount = 0;
         int totalResults = glossaries.size();
         for (GlossaryEnrichmentDetails details : glossaries.values()) {
             String glossaryName = details.getName();
             Glossary.GlossaryBuilder<?, ?> builder = null;
-            if (!glossaryNameToResult.containsKey(glossaryName)) {
-                try {
-                    Glossary found = Glossary.findByName(glossaryName);
-                    builder = found.trimToRequired();
-                } catch (NotFoundException e) {
-                    if (updateOnly) {
-                        log.warn("Unable to find existing glossary — skipping: {}", glossaryName);
-                    } else {
-                        builder = Glossary.creator(glossaryName);
-                    }
-                } catch (AtlanException e) {
-                    log.error("Unable to even search for the glossary: {}", glossaryName, e);
+            try {
+                // Use any glossary already in the cache, rather than searching for it again
+                Asset known =
+                        glossaryNameToResult.containsKey(glossaryName) ? glossaryNameToResult.get(glossaryName) : null;
+                Glossary found = known instanceof Glossary ? (Glossary) known : Glossary.findByName(glossaryName);
+                builder = found.trimToRequired();
+            } catch (NotFoundException e) {
+                if (updateOnly) {
+                    log.warn("Unable to find existing glossary — skipping: {}", glossaryName);
+                } else {
+                    builder = Glossary.creator(glossaryName);
                 }
+            } catch (AtlanException e) {
+                log.error("Unable to even search for the glossary: {}", glossaryName, e);
             }
             if (builder != null) {
                 builder = builder.description(details.getDescription())
@@ -157,6 +178,10 @@ public class GlossaryEnrichmentDetails extends EnrichmentDetails {
                         // If it was a no-op because nothing changed, pass-through the glossary we already found
                         glossaryNameToResult.put(glossaryName, glossary);
                     }
+                } catch (NotFoundException e) {
+                    // The glossary we had cached no longer exists, so it must be looked up again next time
+                    log.error("Unable to find glossary to upsert — dropping it from the cache: {}", glossaryName);
+                    glossaryNameToResult.invalidate(glossaryName);
                 } catch (AtlanException e) {
                     log.error("Unable to upsert glossary: {}", details.getIdentity());
                 }
@@ -177,6 +202,8 @@ public class GlossaryEnrichmentDetails extends EnrichmentDetails {
         }
 
         // Then go through and create any the READMEs linked to these assets...
+        // (skipping any whose content is unchanged from what already exists)
+        readmes.keySet().removeAll(getUnchangedReadmes(readmes, glossaryNameToResult::get, batchSize));
         try {
             AssetBatch readmeBatch = new AssetBatch(Atlan.getDefaultClient(), Readme.TYPE_NAME, batchSize);
             for (Map.Entry<String, String> entry : readmes.entrySet()) {
@@ -215,121 +215,214 @@ public class LineageDetails extends AssetDetails {
      * @param batchSize maximum number of processes to create per batch
      */
     public static void upsert(Map<String, Set<LineageDetails>> processes, int batchSize) {
-        AssetBatch batch = new AssetBatch(Atlan.getDefaultClient(), LineageProcess.TYPE_NAME, batchSize);
-        Map<String, List<String>> toTag = new HashMap<>();
-
-        long totalResults = processes.size();
-        long localCount = 0;
-
-        try {
-            for (Map.Entry<String, Set<LineageDetails>> entry : processes.entrySet()) {
-                Set<LineageDetails> assets = entry.getValue();
-                Set<ICatalog> inputs = new HashSet<>();
-                Set<ICatalog> outputs = new HashSet<>();
-                Set<String> atlanTagNames = new HashSet<>();
-                String description = null;
-                CertificateStatus certificate = null;
-                String certificateMessage = null;
-                AtlanAnnouncementType announcementType = null;
-                String announcementTitle = null;
-                String announcementMessage = null;
-                Set<String> ownerUsers = new HashSet<>();
-                Set<String> ownerGroups = new HashSet<>();
-                String sqlCode = null;
-                String processUrl = null;
-                String processId = null;
-                String processConnectionQN = null;
-                for (LineageDetails details : assets) {
-                    processId = details.getProcessId();
-                    processConnectionQN = details.getProcessConnectionQualifiedName();
-                    AssetHeader source = details.getSourceAsset();
-                    AssetHeader target = details.getTargetAsset();
-                    ICatalog input = ICatalog.getLineageReference(source.getTypeName(), source.getQualifiedName());
-                    ICatalog output = ICatalog.getLineageReference(target.getTypeName(), target.getQualifiedName());
-                    inputs.add(input);
-                    outputs.add(output);
-                    if (details.getDescription() != null
-                            && !details.getDescription().isEmpty()) {
-                        description = details.getDescription();
-                    }
-                    if (details.getCertificate() != null) {
-                        certificate = details.getCertificate();
-                    }
-                    if (details.getCertificateStatusMessage() != null
-                            && !details.getCertificateStatusMessage().isEmpty()) {
-                        certificateMessage = details.getCertificateStatusMessage();
-                    }
-                    if (details.getAnnouncementType() != null) {
-                        announcementType = details.getAnnouncementType();
-                    }
-                    if (details.getAnnouncementTitle() != null
-                            && !details.getAnnouncementTitle().isEmpty()) {
-                        announcementTitle = details.getAnnouncementTitle();
-                    }
-                    if (details.getAnnouncementMessage() != null
-                            && !details.getAnnouncementMessage().isEmpty()) {
-                        announcementMessage = details.getAnnouncementMessage();
-                    }
-                    if (details.getOwnerUsers() != null) {
-                        ownerUsers.addAll(details.getOwnerUsers());
-                    }
-                    if (details.getOwnerGroups() != null) {
-                        ownerGroups.addAll(details.getOwnerGroups());
-                    }
-                    if (details.getSqlCode() != null && !details.getSqlCode().isEmpty()) {
-                        sqlCode = details.getSqlCode();
-                    }
-                    if (details.getProcessUrl() != null
-                            && !details.getProcessUrl().isEmpty()) {
-                        processUrl = details.getProcessUrl();
-                    }
-                    if (details.getAtlanTags() != null) {
-                        atlanTagNames.addAll(details.getAtlanTags());
-                    }
+        ProcessUpserter upserter = new ProcessUpserter(batchSize, processes.size());
+        for (Set<LineageDetails> assets : processes.values()) {
+            ProcessAccumulator process = new ProcessAccumulator();
+            for (LineageDetails details : assets) {
+                process.add(details);
+            }
+            upserter.add(process);
+        }
+        upserter.finish();
+    }
+
+    /**
+     * Accumulates the details of all the rows for a single lineage process, retaining only what is
+     * needed to create the process (rather than every row's details).
+     */
+    static final class ProcessAccumulator {
+        private final Set<AssetHeader> inputs = new LinkedHashSet<>();
+        private final Set<AssetHeader> outputs = new LinkedHashSet<>();
+        private final Set<String> atlanTagNames = new LinkedHashSet<>();
+        private final Set<String> ownerUsers = new LinkedHashSet<>();
+        private final Set<String> ownerGroups = new LinkedHashSet<>();
+        private String description = null;
+        private CertificateStatus certificate = null;
+        private String certificateMessage = null;
+        private AtlanAnnouncementType announcementType = null;
+        private String announcementTitle = null;
+        private String announcementMessage = null;
+        private String sqlCode = null;
+        private String processUrl = null;
+        private String processId = null;
+        private String processConnectionQN = null;
+
+        /**
+         * Add the details from a single row to this process. Where a row provides a value that can only
+         * be set once on the process (like its description), the last non-empty value provided wins.
+         *
+         * @param details from a single row for this process
+         */
+        void add(LineageDetails details) {
+            processId = details.getProcessId();
+            processConnectionQN = details.getProcessConnectionQualifiedName();
+            inputs.add(details.getSourceAsset());
+            outputs.add(details.getTargetAsset());
+            description = latest(description, details.getDescription());
+            if (details.getCertificate() != null) {
+                certificate = details.getCertificate();
+            }
+            certificateMessage = latest(certificateMessage, details.getCertificateStatusMessage());
+            if (details.getAnnouncementType() != null) {
+                announcementType = details.getAnnouncementType();
+            }
+            announcementTitle = latest(announcementTitle, details.getAnnouncementTitle());
+            announcementMessage = latest(announcementMessage, details.getAnnouncementMessage());
+            if (details.getOwnerUsers() != null) {
+                ownerUsers.addAll(details.getOwnerUsers());
+            }
+            if (details.getOwnerGroups() != null) {
+                ownerGroups.addAll(details.getOwnerGroups());
+            }
+            sqlCode = latest(sqlCode, details.getSqlCode());
+            processUrl = latest(processUrl, details.getProcessUrl());
+            if (details.getAtlanTags() != null) {
+                atlanTagNames.addAll(details.getAtlanTags());
+            }
+        }
+
+        /**
+         * Merge the details accumulated for the same process from some later rows into this process.
+         *
+         * @param later details accumulated from rows that came after all the rows already in this process
+         */
+        void merge(ProcessAccumulator later) {
+            processId = later.processId;
+            processConnectionQN = later.processConnectionQN;
+            inputs.addAll(later.inputs);
+            outputs.addAll(later.outputs);
+            description = latest(description, later.description);
+            if (later.certificate != null) {
+                certificate = later.certificate;
+            }
+            certificateMessage = latest(certificateMessage, later.certificateMessage);
+            if (later.announcementType != null) {
+                announcementType = later.announcementType;
+            }
+            announcementTitle = latest(announcementTitle, later.announcementTitle);
+            announcementMessage = latest(announcementMessage, later.announcementMessage);
+            ownerUsers.addAll(later.ownerUsers);
+            ownerGroups.addAll(later.ownerGroups);
+            sqlCode = latest(sqlCode, later.sqlCode);
+            processUrl = latest(processUrl, later.processUrl);
+            atlanTagNames.addAll(later.atlanTagNames);
+        }
+
+        /**
+         * Build the lineage process from all the accumulated details.
+         *
+         * @return the lineage process, or null if there is no connection for the process
+         */
+        LineageProcess toProcess() {
+            if (processConnectionQN == null) {
+                return null;
+            }
+            List<ICatalog> inputRefs = new ArrayList<>();
+            for (AssetHeader input : inputs) {
+                inputRefs.add(ICatalog.getLineageReference(input.getTypeName(), input.getQualifiedName()));
+            }
+            List<ICatalog> outputRefs = new ArrayList<>();
+            for (AssetHeader output : outputs) {
+                outputRefs.add(ICatalog.getLineageReference(output.getTypeName(), output.getQualifiedName()));
+            }
+            return LineageProcess.creator(processId, processConnectionQN, processId, inputRefs, outputRefs, null)
+                    .description(description)
+                    .certificateStatus(certificate)
+                    .certificateStatusMessage(certificateMessage)
+                    .announcementType(announcementType)
+                    .announcementTitle(announcementTitle)
+                    .announcementMessage(announcementMessage)
+                    .ownerUsers(ownerUsers)
+                    .ownerGroups(ownerGroups)
+                    .sql(sqlCode)
+                    .code(sqlCode)
+                    .sourceURL(processUrl)
+                    .build();
+        }
+
+        Set<String> getAtlanTagNames() {
+            return atlanTagNames;
+        }
+
+        private static String latest(String current, String candidate) {
+            return candidate != null && !candidate.isEmpty() ? candidate : current;
+        }
+    }
+
+    /**
+     * Upserts lineage processes in batches as they are completed, tagging each batch of processes
+     * once it has been saved (so that nothing needs to be retained for the processes already saved).
+     */
+    static final class ProcessUpserter {
+        private final AssetBatch batch;
+        private final long totalResults;
+        private final Map<String, List<String>> toTag = new HashMap<>();
+        private long localCount = 0;
+
+        /**
+         * Start upserting lineage processes.
+         *
+         * @param batchSize maximum number of processes to create per batch
+         * @param totalResults total number of processes that will be upserted, or -1 if this is not known up-front
+         */
+        ProcessUpserter(int batchSize, long totalResults) {
+            this.batch = new AssetBatch(Atlan.getDefaultClient(), LineageProcess.TYPE_NAME, batchSize);
+            this.totalResults = totalResults;
+        }
+
+        /**
+         * Queue up a completed lineage process to be upserted.
+         *
+         * @param process all the accumulated details for the process
+         */
+        void add(ProcessAccumulator process) {
+            LineageProcess toUpsert = process.toProcess();
+            if (toUpsert != null) {
+                if (!process.getAtlanTagNames().isEmpty()) {
+                    toTag.put(toUpsert.getQualifiedName(), new ArrayList<>(process.getAtlanTagNames()));
                 }
-                if (processConnectionQN != null) {
-                    LineageProcess.LineageProcessBuilder<?, ?> builder = LineageProcess.creator(
-                                    processId,
-                                    processConnectionQN,
-                                    processId,
-                                    new ArrayList<>(inputs),
-                                    new ArrayList<>(outputs),
-                                    null)
-                            .description(description)
-                            .certificateStatus(certificate)
-                            .certificateStatusMessage(certificateMessage)
-                            .announcementType(announcementType)
-                            .announcementTitle(announcementTitle)
-                            .announcementMessage(announcementMessage)
-                            .ownerUsers(ownerUsers)
-                            .ownerGroups(ownerGroups)
-                            .sql(sqlCode)
-                            .code(sqlCode)
-                            .sourceURL(processUrl);
-                    LineageProcess process = builder.build();
-                    if (!atlanTagNames.isEmpty()) {
-                        toTag.put(process.getQualifiedName(), new ArrayList<>(atlanTagNames));
-                    }
-                    localCount++;
-                    if (batch.add(process) != null) {
-                        log.info(
-                                " ... processed {}/{} ({}%)",
-                                localCount, totalResults, Math.round(((double) localCount / totalResults) * 100));
+                localCount++;
+                try {
+                    if (batch.add(toUpsert) != null) {
+                        logProgress();
+                        tagSaved();
                     }
+                } catch (AtlanException e) {
+                    log.error("Unable to bulk-upsert lineage processes.", e);
                 }
             }
-            // And don't forget to flush out any that remain
-            if (batch.flush() != null) {
+        }
+
+        /**
+         * Upsert (and tag) any processes that remain queued.
+         */
+        void finish() {
+            try {
+                // And don't forget to flush out any that remain
+                if (batch.flush() != null) {
+                    logProgress();
+                }
+            } catch (AtlanException e) {
+                log.error("Unable to bulk-upsert lineage processes.", e);
+            }
+            tagSaved();
+        }
+
+        private void tagSaved() {
+            // Atlan tags must be added in a second pass, after the asset exists
+            appendAtlanTags(toTag, LineageProcess.TYPE_NAME);
+            toTag.clear();
+        }
+
+        private void logProgress() {
+            if (totalResults > 0) {
                 log.info(
                         " ... processed {}/{} ({}%)",
                         localCount, totalResults, Math.round(((double) localCount / totalResults) * 100));
+            } else {
+                log.info(" ... processed {}", localCount);
             }
-        } catch (AtlanException e) {
-            log.error("Unable to bulk-upsert lineage processes.", e);
         }
-
-        // Atlan tags must be added in a second pass, after the asset exists
-        appendAtlanTags(toTag, LineageProcess.TYPE_NAME);
     }
 
     @Getter
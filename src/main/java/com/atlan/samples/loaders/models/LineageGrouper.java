@@ -0,0 +1,300 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+/* Copyright 2023 Atlan Pte. Ltd. */
+package com.atlan.samples.loaders.models;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.atlan.model.enums.AtlanAnnouncementType;
+import com.atlan.model.enums.CertificateStatus;
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.reader.CsvRow;
+import de.siegmar.fastcsv.writer.CsvWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Utility class for grouping the rows of a (potentially very large) lineage sheet into lineage processes, while
+ * keeping memory bounded. Each process is upserted as soon as all of its rows are known to have been seen.
+ * <ul>
+ *     <li>If the rows are sorted (all rows for a given process are contiguous), each process is upserted as
+ *         soon as a row for a different process is seen, so only a single process is ever held in memory.</li>
+ *     <li>Otherwise, rows are grouped in memory up to a limit, after which any further rows are spilled to
+ *         temporary files partitioned by process. Each partition is then grouped (and its processes upserted)
+ *         one at a time, so at most one partition's worth of processes is held in memory at once.</li>
+ * </ul>
+ * Always close the grouper once done with it (including when grouping fails), so that any temporary files it
+ * spilled rows to are released and removed.
+ */
+@Slf4j
+public class LineageGrouper implements Closeable {
+
+    /** Default maximum number of rows to group in memory before spilling any further rows to disk. */
+    public static final int DEFAULT_MAX_IN_MEMORY = 100_000;
+
+    /** Default number of partitions (temporary files) across which to spill rows. */
+    public static final int DEFAULT_PARTITIONS = 64;
+
+    private static final String LIST_DELIMITER = "\u001F";
+
+    private final boolean sorted;
+    private final int maxInMemory;
+    private final int partitions;
+    private final LineageDetails.ProcessUpserter upserter;
+
+    // Processes still being grouped in memory, keyed by process identity
+    private final Map<String, LineageDetails.ProcessAccumulator> inMemory = new LinkedHashMap<>();
+    private long rowsInMemory = 0;
+
+    // Identities of processes already upserted (only tracked for sorted input, to detect unsorted input)
+    private final Set<String> completed = new HashSet<>();
+    private String current = null;
+
+    private Path[] spillFiles = null;
+    private CsvWriter[] spillWriters = null;
+    private long spilled = 0;
+
+    /**
+     * Start grouping lineage rows into processes, using the default limits.
+     *
+     * @param batchSize maximum number of processes to create per batch
+     * @param sorted if true, all rows for a given process are guaranteed to be contiguous
+     */
+    public LineageGrouper(int batchSize, boolean sorted) {
+        this(batchSize, sorted, DEFAULT_MAX_IN_MEMORY, DEFAULT_PARTITIONS);
+    }
+
+    /**
+     * Start grouping lineage rows into processes.
+     *
+     * @param batchSize maximum number of processes to create per batch
+     * @param sorted if true, all rows for a given process are guaranteed to be contiguous
+     * @param maxInMemory maximum number of (unsorted) rows to group in memory before spilling any further rows to disk
+     * @param partitions number of partitions (temporary files) across which to spill rows
+     */
+    public LineageGrouper(int batchSize, boolean sorted, int maxInMemory, int partitions) {
+        this.sorted = sorted;
+        this.maxInMemory = maxInMemory;
+        this.partitions = Math.max(1, partitions);
+        this.upserter = new LineageDetails.ProcessUpserter(batchSize, -1);
+    }
+
+    /**
+     * Add the details from a single row of the lineage sheet.
+     *
+     * @param details of the lineage on a single row
+     * @throws IOException on any problems spilling the row to disk
+     */
+    public void add(LineageDetails details) throws IOException {
+        String identity = details.getIdentity();
+        if (sorted) {
+            if (!identity.equals(current)) {
+                completeCurrent();
+                if (!completed.add(identity)) {
+                    log.warn(
+                            "Rows for lineage process {} are not contiguous — the process will only retain the details from its last group of rows. Sort the lineage by process, or disable LINEAGE_SORTED.",
+                            identity);
+                }
+                current = identity;
+            }
+            inMemory.computeIfAbsent(identity, k -> new LineageDetails.ProcessAccumulator())
+                    .add(details);
+        } else if (rowsInMemory < maxInMemory) {
+            inMemory.computeIfAbsent(identity, k -> new LineageDetails.ProcessAccumulator())
+                    .add(details);
+            rowsInMemory++;
+        } else {
+            spill(identity, details);
+        }
+    }
+
+    /**
+     * Upsert all the processes that remain, once every row has been added.
+     *
+     * @throws IOException on any problems reading back the rows spilled to disk
+     */
+    public void finish() throws IOException {
+        if (sorted) {
+            completeCurrent();
+        } else {
+            if (spillFiles != null) {
+                log.info(" ... {} lineage rows were spilled to disk, grouping them by partition.", spilled);
+                closeWriters();
+                for (int i = 0; i < partitions; i++) {
+                    upsertPartition(i);
+                }
+            }
+            // Any processes that remain in memory had no rows spilled to disk
+            for (LineageDetails.ProcessAccumulator process : inMemory.values()) {
+                upserter.add(process);
+            }
+            inMemory.clear();
+        }
+        upserter.finish();
+    }
+
+    /**
+     * Release any temporary files used to spill rows to disk, whether or not grouping completed.
+     *
+     * @throws IOException on any problems closing or removing the temporary files
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        try {
+            closeWriters();
+        } catch (IOException e) {
+            failure = e;
+        }
+        if (spillFiles != null) {
+            for (Path file : spillFiles) {
+                try {
+                    if (file != null) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void closeWriters() throws IOException {
+        if (spillWriters != null) {
+            IOException failure = null;
+            for (CsvWriter writer : spillWriters) {
+                try {
+                    if (writer != null) {
+                        writer.close();
+                    }
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            spillWriters = null;
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private void completeCurrent() {
+        if (current != null) {
+            LineageDetails.ProcessAccumulator process = inMemory.remove(current);
+            if (process != null) {
+                upserter.add(process);
+            }
+        }
+    }
+
+    private int getPartition(String identity) {
+        return Math.floorMod(identity.hashCode(), partitions);
+    }
+
+    private void spill(String identity, LineageDetails details) throws IOException {
+        if (spillFiles == null) {
+            log.info(" ... more than {} lineage rows, spilling any further rows to disk.", maxInMemory);
+            spillFiles = new Path[partitions];
+            spillWriters = new CsvWriter[partitions];
+            for (int i = 0; i < partitions; i++) {
+                spillFiles[i] = Files.createTempFile("lineage-" + i + "-", ".csv");
+                spillFiles[i].toFile().deleteOnExit();
+                spillWriters[i] = CsvWriter.builder().build(Files.newBufferedWriter(spillFiles[i], UTF_8));
+            }
+        }
+        LineageDetails.AssetHeader source = details.getSourceAsset();
+        LineageDetails.AssetHeader target = details.getTargetAsset();
+        spillWriters[getPartition(identity)].writeRow(
+                details.getProcessConnectionQualifiedName(),
+                details.getProcessId(),
+                source.getTypeName(),
+                source.getQualifiedName(),
+                target.getTypeName(),
+                target.getQualifiedName(),
+                toCell(details.getDescription()),
+                details.getCertificate() == null ? "" : details.getCertificate().getValue(),
+                toCell(details.getCertificateStatusMessage()),
+                details.getAnnouncementType() == null
+                        ? ""
+                        : details.getAnnouncementType().getValue(),
+                toCell(details.getAnnouncementTitle()),
+                toCell(details.getAnnouncementMessage()),
+                toCell(details.getOwnerUsers()),
+                toCell(details.getOwnerGroups()),
+                toCell(details.getAtlanTags()),
+                toCell(details.getSqlCode()),
+                toCell(details.getProcessUrl()));
+        spilled++;
+    }
+
+    private void upsertPartition(int partition) throws IOException {
+        Map<String, LineageDetails.ProcessAccumulator> grouped = new LinkedHashMap<>();
+        try (CsvReader reader = CsvReader.builder().skipEmptyRows(true).build(spillFiles[partition], UTF_8)) {
+            for (CsvRow row : reader) {
+                LineageDetails details = fromRow(row);
+                grouped.computeIfAbsent(details.getIdentity(), k -> new LineageDetails.ProcessAccumulator())
+                        .add(details);
+            }
+        }
+        for (Map.Entry<String, LineageDetails.ProcessAccumulator> entry : grouped.entrySet()) {
+            // Rows grouped in memory always came before any that were spilled, so merge in that order
+            LineageDetails.ProcessAccumulator earlier = inMemory.remove(entry.getKey());
+            if (earlier != null) {
+                earlier.merge(entry.getValue());
+                upserter.add(earlier);
+            } else {
+                upserter.add(entry.getValue());
+            }
+        }
+        Files.deleteIfExists(spillFiles[partition]);
+    }
+
+    private static LineageDetails fromRow(CsvRow row) {
+        String certificate = fromCell(row.getField(7));
+        String announcement = fromCell(row.getField(9));
+        return LineageDetails.builder()
+                .processConnectionQualifiedName(row.getField(0))
+                .processId(row.getField(1))
+                .sourceAsset(LineageDetails.AssetHeader.of(row.getField(2), row.getField(3)))
+                .targetAsset(LineageDetails.AssetHeader.of(row.getField(4), row.getField(5)))
+                .description(fromCell(row.getField(6)))
+                .certificate(certificate == null ? null : CertificateStatus.fromValue(certificate))
+                .certificateStatusMessage(fromCell(row.getField(8)))
+                .announcementType(announcement == null ? null : AtlanAnnouncementType.fromValue(announcement))
+                .announcementTitle(fromCell(row.getField(10)))
+                .announcementMessage(fromCell(row.getField(11)))
+                .ownerUsers(AssetDetails.getMultiValuedList(row.getField(12), LIST_DELIMITER))
+                .ownerGroups(AssetDetails.getMultiValuedList(row.getField(13), LIST_DELIMITER))
+                .atlanTags(AssetDetails.getMultiValuedList(row.getField(14), LIST_DELIMITER))
+                .sqlCode(fromCell(row.getField(15)))
+                .processUrl(fromCell(row.getField(16)))
+                .stub(false)
+                .build();
+    }
+
+    private static String toCell(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String toCell(List<String> values) {
+        return values == null ? "" : String.join(LIST_DELIMITER, values);
+    }
+
+    private static String fromCell(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
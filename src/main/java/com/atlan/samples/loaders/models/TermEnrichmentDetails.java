@@ -2,6 +2,7 @@
 /* Copyright 2023 Atlan Pte. Ltd. */
 package com.atlan.samples.loaders.models;
 
+import co.elastic.clients.elasticsearch._types.SortOrder;
 import com.atlan.Atlan;
 import com.atlan.exception.AtlanException;
 import com.atlan.exception.InvalidRequestException;
@@ -15,6 +16,7 @@ import com.atlan.samples.loaders.caches.GlossaryCache;
 import com.atlan.samples.loaders.caches.TermCache;
 import com.atlan.util.AssetBatch;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
@@ -193,12 +195,43 @@ public class TermEnrichmentDetails extends EnrichmentDetails {
             boolean replaceAtlanTags,
             boolean replaceCM,
             boolean updateOnly) {
-        TermCache termIdentityToResult = new TermCache();
+        return upsert(new TermCache(), terms, batchSize, replaceAtlanTags, replaceCM, updateOnly);
+    }
+
+    /**
+     * Create terms in bulk, if they do not exist, or update them if they do (idempotent).
+     *
+     * @param termIdentityToResult a cache of terms, which may already contain (some of) the terms
+     * @param terms the set of terms to ensure exist
+     * @param batchSize maximum number of terms to create per batch
+     * @param replaceAtlanTags if true, the Atlan tags in the spreadsheet will overwrite all existing Atlan tags on the asset; otherwise they will only be appended
+     * @param replaceCM if true, the custom metadata in the spreadsheet will overwrite all custom metadata on the asset; otherwise only the attributes with values will be updated
+     * @param updateOnly if true, only attempt to update existing assets, otherwise allow assets to be created as well
+     * @return the cache of the terms
+     */
+    public static TermCache upsert(
+            TermCache termIdentityToResult,
+            Map<String, TermEnrichmentDetails> terms,
+            int batchSize,
+            boolean replaceAtlanTags,
+            boolean replaceCM,
+            boolean updateOnly) {
         Map<String, List<String>> toTag = new HashMap<>();
         Map<String, Map<String, CustomMetadataAttributes>> cmToUpdate = new HashMap<>();
         Map<String, String> readmes = new HashMap<>();
         Map<String, TermEnrichmentDetails> termToTerm = new HashMap<>();
 
+        // Prefetch all the existing terms in each glossary (once), rather than searching for each term individually
+        Map<String, Map<String, GlossaryTerm>> existingTerms =
+                prefetchTerms(termIdentityToResult, terms.values(), batchSize);
+        for (Map.Entry<String, Map<String, GlossaryTerm>> entry : existingTerms.entrySet()) {
+            String glossaryName = entry.getKey();
+            for (GlossaryTerm existing : entry.getValue().values()) {
+                // Also cache these, so that any term-to-term relationships can be resolved without further lookups
+                termIdentityToResult.put(existing.getName() + glossaryDelimiter + glossaryName, existing);
+            }
+        }
+
         long localCount = 0;
         long totalResults = terms.size();
         for (TermEnrichmentDetails details : terms.values()) {
@@ -207,11 +240,10 @@ public class TermEnrichmentDetails extends EnrichmentDetails {
                 String termName = details.getName();
                 GlossaryTerm.GlossaryTermBuilder<?, ?> builder = null;
                 try {
-                    GlossaryTerm found =
-                            GlossaryTerm.findByNameFast(termName, glossary.getQualifiedName(), List.of("anchor"));
-                    builder = found.trimToRequired().guid(found.getGuid());
-                } catch (NotFoundException e) {
-                    if (updateOnly) {
+                    GlossaryTerm found = findExisting(termIdentityToResult, existingTerms, details);
+                    if (found != null) {
+                        builder = found.trimToRequired().guid(found.getGuid());
+                    } else if (updateOnly) {
                         log.warn("Unable to find existing term — skipping: {}@{}", termName, glossary.getName());
                     } else {
                         builder = GlossaryTerm.creator(termName, glossary.getGuid());
@@ -284,6 +316,14 @@ public class TermEnrichmentDetails extends EnrichmentDetails {
                             // If it was a no-op because nothing changed, pass-through the term we already found
                             termIdentityToResult.put(details.getIdentity(), term);
                         }
+                    } catch (NotFoundException e) {
+                        // The term (or something it refers to) that we had cached no longer exists,
+                        // so it must be looked up again next time
+                        log.error(
+                                "Unable to find term (or its references) to upsert — dropping it from the cache: {}",
+                                details.getIdentity(),
+                                e);
+                        termIdentityToResult.invalidate(details.getIdentity());
                     } catch (AtlanException e) {
                         log.error("Unable to upsert term: {}", details.getIdentity(), e);
                     }
@@ -325,6 +365,8 @@ public class TermEnrichmentDetails extends EnrichmentDetails {
         }
 
         // Then go through and create any the READMEs linked to these assets...
+        // (skipping any whose content is unchanged from what already exists)
+        readmes.keySet().removeAll(getUnchangedReadmes(readmes, termIdentityToResult::get, batchSize));
         try {
             AssetBatch readmeBatch = new AssetBatch(Atlan.getDefaultClient(), Readme.TYPE_NAME, batchSize);
             for (Map.Entry<String, String> entry : readmes.entrySet()) {
@@ -427,4 +469,95 @@ public class TermEnrichmentDetails extends EnrichmentDetails {
 
         return termIdentityToResult;
     }
+
+    /**
+     * Retrieve all the existing terms in each glossary referenced by the provided terms. Each glossary
+     * is only searched once (retrieving its terms in parallel pages), no matter how many terms are
+     * being loaded into it. Glossaries whose terms are all already cached are not searched at all.
+     *
+     * @param termCache a cache of terms, which may already contain (some of) the terms
+     * @param terms the set of terms that are to be loaded
+     * @param batchSize number of terms to retrieve per page of results
+     * @return a mapping from glossary name to an index of its existing terms, keyed by term name
+     */
+    private static Map<String, Map<String, GlossaryTerm>> prefetchTerms(
+            TermCache termCache, Collection<TermEnrichmentDetails> terms, int batchSize) {
+        Map<String, Asset> glossaries = new LinkedHashMap<>();
+        for (TermEnrichmentDetails details : terms) {
+            Asset glossary = details.getGlossary();
+            if (glossary != null && getCached(termCache, details.getIdentity()) == null) {
+                glossaries.putIfAbsent(glossary.getName(), glossary);
+            }
+        }
+        Map<String, Map<String, GlossaryTerm>> existing = new HashMap<>();
+        for (Asset glossary : glossaries.values()) {
+            Map<String, GlossaryTerm> nameToTerm = new ConcurrentHashMap<>();
+            try {
+                GlossaryTerm.select()
+                        .where(GlossaryTerm.ANCHOR.eq(glossary.getQualifiedName()))
+                        .pageSize(batchSize)
+                        .includeOnResults(GlossaryTerm.ANCHOR)
+                        // Note: a stable order is needed to page in parallel without skipping any terms
+                        .sort(Asset.GUID.order(SortOrder.Asc))
+                        .stream(true)
+                        .filter(a -> a instanceof GlossaryTerm)
+                        .forEach(t -> nameToTerm.put(t.getName(), (GlossaryTerm) t));
+                log.info("Prefetched {} existing terms from glossary: {}", nameToTerm.size(), glossary.getName());
+                existing.put(glossary.getName(), nameToTerm);
+            } catch (AtlanException e) {
+                log.warn(
+                        "Unable to prefetch the terms in glossary {} — will look them up one-by-one instead.",
+                        glossary.getName(),
+                        e);
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Find an existing term, using the cached or prefetched terms where available (and otherwise
+     * searching for the term directly).
+     *
+     * @param termCache a cache of terms, which may already contain the term
+     * @param existingTerms terms prefetched from each glossary, keyed by glossary name and then term name
+     * @param details of the term to find
+     * @return the existing term, or null if there is no such term in the glossary
+     * @throws AtlanException on any problems searching for the term
+     */
+    private static GlossaryTerm findExisting(
+            TermCache termCache, Map<String, Map<String, GlossaryTerm>> existingTerms, TermEnrichmentDetails details)
+            throws AtlanException {
+        GlossaryTerm cached = getCached(termCache, details.getIdentity());
+        if (cached != null) {
+            return cached;
+        }
+        String termName = details.getName();
+        Asset glossary = details.getGlossary();
+        Map<String, GlossaryTerm> inGlossary = existingTerms.get(glossary.getName());
+        if (inGlossary != null) {
+            return inGlossary.get(termName);
+        }
+        try {
+            return GlossaryTerm.findByNameFast(termName, glossary.getQualifiedName(), List.of("anchor"));
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Retrieve a term from the cache, only if it is already there (without looking it up).
+     *
+     * @param termCache a cache of terms
+     * @param identity of the term
+     * @return the cached term, or null if it is not (yet) in the cache
+     */
+    private static GlossaryTerm getCached(TermCache termCache, String identity) {
+        if (termCache.containsKey(identity)) {
+            Asset cached = termCache.get(identity);
+            if (cached instanceof GlossaryTerm) {
+                return (GlossaryTerm) cached;
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,212 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+/* Copyright 2023 Atlan Pte. Ltd. */
+package com.atlan.samples.readers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Consumer;
+import javax.xml.parsers.ParserConfigurationException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Utility class for streaming through the contents of (potentially very large) Excel files, using the
+ * streaming (SAX) API of Apache POI. Unlike {@link ExcelReader}, the workbook is never loaded into memory:
+ * each sheet is parsed row-by-row, every time its rows are requested. Values are read the same way as
+ * {@link ExcelReader} reads them.
+ */
+public class ExcelStreamReader {
+
+    private final String fileLocation;
+    private final String caseSensitiveDelimiter;
+
+    /**
+     * Construct a new streaming Excel file reader.
+     *
+     * @param fileLocation location of the Excel file
+     */
+    public ExcelStreamReader(String fileLocation) {
+        this(fileLocation, "|");
+    }
+
+    /**
+     * Construct a new streaming Excel file reader allowing for case-sensitive column headings.
+     *
+     * @param fileLocation location of the Excel file
+     * @param caseSensitiveDelimiter delimiter to look for to leave a column heading as case-sensitive
+     */
+    public ExcelStreamReader(String fileLocation, String caseSensitiveDelimiter) {
+        this.fileLocation = fileLocation;
+        this.caseSensitiveDelimiter = caseSensitiveDelimiter;
+    }
+
+    /**
+     * Check whether the workbook contains the named sheet.
+     *
+     * @param name of the worksheet
+     * @return true if the workbook contains a sheet with that name, otherwise false
+     * @throws IOException on any errors accessing or parsing the file
+     */
+    public boolean hasSheet(String name) throws IOException {
+        OPCPackage pkg = open();
+        try {
+            XSSFReader.SheetIterator sheets = getSheets(new XSSFReader(pkg));
+            while (sheets.hasNext()) {
+                try (InputStream ignored = sheets.next()) {
+                    if (name.equals(sheets.getSheetName())) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } catch (OpenXML4JException e) {
+            throw new IOException("Unable to read the sheets of the Excel file: " + fileLocation, e);
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    /**
+     * Retrieve all rows from the specified sheet of the Excel workbook.
+     *
+     * @param name of the worksheet from which to retrieve the data
+     * @param headerRow index of the row containing headers (0-based)
+     * @return a list of rows, each being a mapping from column name (upper-cased) to its value
+     * @throws IOException if the requested sheet cannot be found in the provided Excel file
+     */
+    public List<Map<String, String>> getRowsFromSheet(String name, int headerRow) throws IOException {
+        List<Map<String, String>> allRows = new ArrayList<>();
+        streamRowsFromSheet(name, headerRow, allRows::add);
+        return allRows;
+    }
+
+    /**
+     * Stream through all rows from the specified sheet of the Excel workbook, one row at a time.
+     *
+     * @param name of the worksheet from which to retrieve the data
+     * @param headerRow index of the row containing headers (0-based)
+     * @param action to apply to each row, each being a mapping from column name (upper-cased) to its value
+     * @throws IOException if the requested sheet cannot be found in (or read from) the provided Excel file
+     */
+    public void streamRowsFromSheet(String name, int headerRow, Consumer<Map<String, String>> action)
+            throws IOException {
+        OPCPackage pkg = open();
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            XSSFReader.SheetIterator sheets = getSheets(reader);
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    if (name.equals(sheets.getSheetName())) {
+                        XMLReader parser = XMLHelper.newXMLReader();
+                        parser.setContentHandler(new XSSFSheetXMLHandler(
+                                reader.getStylesTable(),
+                                null,
+                                new ReadOnlySharedStringsTable(pkg),
+                                new RowHandler(headerRow, action),
+                                new PlainNumberFormatter(),
+                                true));
+                        parser.parse(new InputSource(sheet));
+                        return;
+                    }
+                }
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Unable to read sheet '" + name + "' from the Excel file: " + fileLocation, e);
+        } finally {
+            pkg.revert();
+        }
+        throw new IOException("Could not find sheet with name '" + name + "' in the provided Excel file.");
+    }
+
+    private OPCPackage open() throws IOException {
+        try {
+            return OPCPackage.open(fileLocation, PackageAccess.READ);
+        } catch (OpenXML4JException e) {
+            throw new IOException("Unable to open the Excel file: " + fileLocation, e);
+        }
+    }
+
+    private static XSSFReader.SheetIterator getSheets(XSSFReader reader) throws IOException, OpenXML4JException {
+        return (XSSFReader.SheetIterator) reader.getSheetsData();
+    }
+
+    /**
+     * Builds up each row (after the header) as a mapping from column name to value, as it is parsed.
+     */
+    private final class RowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final int headerRow;
+        private final Consumer<Map<String, String>> action;
+        private final List<String> header = new ArrayList<>();
+        private Map<String, String> current = null;
+        private int rowNum = -1;
+
+        RowHandler(int headerRow, Consumer<Map<String, String>> action) {
+            this.headerRow = headerRow;
+            this.action = action;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void startRow(int rowNum) {
+            this.rowNum = rowNum;
+            current = rowNum > headerRow ? new HashMap<>() : null;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void endRow(int rowNum) {
+            if (current != null && !current.isEmpty()) {
+                action.accept(current);
+            }
+            current = null;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (rowNum == headerRow) {
+                addHeader(formattedValue);
+            } else if (current != null && formattedValue != null) {
+                int colIdx = new CellReference(cellReference).getCol();
+                if (colIdx < header.size()) {
+                    current.put(header.get(colIdx), formattedValue);
+                }
+            }
+        }
+
+        private void addHeader(String name) {
+            if (name != null) {
+                if (name.contains(caseSensitiveDelimiter)) {
+                    header.add(name);
+                } else if (!name.isEmpty()) {
+                    header.add(name.toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+    }
+
+    /**
+     * Formats numbers the same way as {@link ExcelReader} does (plain, unformatted), rather than
+     * according to the format of the cell.
+     */
+    private static final class PlainNumberFormatter extends DataFormatter {
+        /** {@inheritDoc} */
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            return new BigDecimal("" + value).toPlainString();
+        }
+    }
+}
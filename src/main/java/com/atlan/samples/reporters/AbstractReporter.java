@@ -10,7 +10,9 @@ import com.atlan.model.enums.AtlanEnum;
 import com.atlan.model.fields.AtlanField;
 import com.atlan.model.fields.CustomMetadataField;
 import com.atlan.model.structs.AtlanStruct;
+import com.atlan.samples.writers.ExcelWriter;
 import java.io.IOException;
+import java.net.URI;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
@@ -20,6 +22,8 @@ import java.util.*;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
 
 @Slf4j
 public abstract class AbstractReporter {
@@ -27,11 +31,18 @@ public abstract class AbstractReporter {
     public static final double BYTES_IN_GB = 1073741824.0;
     public static final String TIMESTAMP_FORMAT = "uuuuMMdd-HHmmss-SSS";
 
+    /** Largest buffer (in characters) to keep for reuse on each thread, when serializing values. */
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
     private int _batchSize = 50;
     private String _delimiter = "|";
     private Region _region = null;
     private String _bucket = null;
     private String _filename = null;
+    private String _endpoint = null;
+    private int _maxRowsPerSheet = ExcelWriter.MAX_ROWS_PER_SHEET;
 
     /**
      * Extract the configuration parameters to use from the lambda payload (or equivalent).
@@ -50,10 +61,24 @@ public abstract class AbstractReporter {
                         batchSize);
                 _batchSize = 50;
             }
+            String maxRowsPerSheet = event.getOrDefault("MAX_ROWS_PER_SHEET", null);
+            if (maxRowsPerSheet != null) {
+                try {
+                    _maxRowsPerSheet = Integer.parseInt(maxRowsPerSheet);
+                } catch (NumberFormatException e) {
+                    log.warn(
+                            "Unable to determine a number from the MAX_ROWS_PER_SHEET value of '{}', falling back to a default of {}.",
+                            maxRowsPerSheet,
+                            ExcelWriter.MAX_ROWS_PER_SHEET);
+                    _maxRowsPerSheet = ExcelWriter.MAX_ROWS_PER_SHEET;
+                }
+            }
             _delimiter = event.getOrDefault("DELIMITER", "|");
             String region = event.getOrDefault("REGION", "ap-south-1");
             _region = Region.of(region);
             _bucket = event.getOrDefault("BUCKET", null);
+            // Allows pointing at an S3-compatible stand-in (for example, for local testing)
+            _endpoint = event.getOrDefault("S3_ENDPOINT", null);
             Atlan.setBaseUrl(event.getOrDefault("ATLAN_BASE_URL", null));
             Atlan.setApiToken(event.getOrDefault("ATLAN_API_KEY", null));
             String maxRetries = event.getOrDefault("MAX_RETRIES", "3");
@@ -250,66 +275,118 @@ public abstract class AbstractReporter {
 
     /**
      * Serialize the provided value into a form that can be stored in a single cell of CSV.
+     * The value is written directly into a buffer that is reused by each thread, rather than building up
+     * intermediate lists and strings for every element of a multi-valued field.
      *
      * @param fromGuid the GUID of the asset being serialized (needed to determine direct vs propagated Atlan tags)
      * @param value the value to be serialized
      * @return a String representation of the value that can be stored in a single cell of CSV
      */
-    @SuppressWarnings("unchecked")
     protected String serializeValueToCSV(String fromGuid, Object value) {
-        // Then figure out how to CSV-string serialize it
-        if (value instanceof String) {
+        // Short-circuit the simplest values, which need no buffering at all
+        if (value == null) {
+            return "";
+        } else if (value instanceof String) {
             return (String) value;
+        } else if (value instanceof AtlanEnum) {
+            return ((AtlanEnum) value).getValue();
+        } else if (value instanceof Asset) {
+            // Note: a single reference is returned exactly as serialized (even if that is null, as for an empty README)
+            return serializeAssetRefToCSV((Asset) value);
+        }
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        appendValue(sb, fromGuid, value);
+        String serialized = sb.toString();
+        if (sb.capacity() > MAX_RETAINED_BUFFER) {
+            // Do not hold on to a buffer that grew very large for a single value
+            BUFFER.remove();
+        }
+        return serialized;
+    }
+
+    /**
+     * Append the CSV-serialized form of the provided value to the buffer.
+     *
+     * @param sb buffer into which to serialize the value
+     * @param fromGuid the GUID of the asset being serialized (needed to determine direct vs propagated Atlan tags)
+     * @param value the value to be serialized
+     */
+    @SuppressWarnings("unchecked")
+    private void appendValue(StringBuilder sb, String fromGuid, Object value) {
+        if (value instanceof String) {
+            sb.append((String) value);
         } else if (value instanceof Collection) {
-            Optional<?> element1 = ((Collection<?>) value).stream().findFirst();
-            if (element1.isPresent()) {
-                Object first = element1.get();
+            Collection<?> values = (Collection<?>) value;
+            Iterator<?> it = values.iterator();
+            if (it.hasNext()) {
+                Object first = it.next();
                 if (first instanceof AtlanTag) {
-                    Collection<AtlanTag> tags = (Collection<AtlanTag>) value;
-                    List<String> directTags = new ArrayList<>();
-                    for (AtlanTag tag : tags) {
+                    boolean separate = false;
+                    for (AtlanTag tag : (Collection<AtlanTag>) values) {
                         if (fromGuid.equals(tag.getEntityGuid())) {
-                            directTags.add(tag.getTypeName());
+                            separate = appendSeparator(sb, separate, getDelimiter());
+                            sb.append(tag.getTypeName());
                         }
                     }
-                    return getDelimitedList(directTags);
                 } else if (first instanceof Asset) {
                     if (first instanceof Link) {
-                        return getComplexList(((Collection<Asset>) value)
-                                .stream().map(this::serializeAssetRefToCSV).collect(Collectors.toList()));
+                        sb.append('[');
+                        appendAssetRefs(sb, (Collection<Asset>) values, ",");
+                        sb.append(']');
                     } else {
-                        return getDelimitedList(((Collection<Asset>) value)
-                                .stream().map(this::serializeAssetRefToCSV).collect(Collectors.toList()));
+                        appendAssetRefs(sb, (Collection<Asset>) values, getDelimiter());
                     }
                 } else if (first instanceof String) {
-                    return getDelimitedList((Collection<String>) value);
+                    boolean separate = false;
+                    for (String one : (Collection<String>) values) {
+                        separate = appendSeparator(sb, separate, getDelimiter());
+                        sb.append(one);
+                    }
                 } else if (first instanceof AtlanStruct) {
-                    return getComplexList(((Collection<AtlanStruct>) value)
-                            .stream().map(this::serializeStructToCSV).collect(Collectors.toList()));
+                    sb.append('[');
+                    boolean separate = false;
+                    for (AtlanStruct struct : (Collection<AtlanStruct>) values) {
+                        separate = appendSeparator(sb, separate, ",");
+                        sb.append(serializeStructToCSV(struct));
+                    }
+                    sb.append(']');
                 } else {
                     log.warn("Unhandled collection of values: {}", first.getClass());
                 }
             }
-            return "";
         } else if (value instanceof Map) {
-            Map<?, ?> map = (Map<?, ?>) value;
-            List<String> values = new ArrayList<>();
-            for (Map.Entry<?, ?> entry : map.entrySet()) {
-                values.add(entry.getKey() + "=" + serializeValueToCSV(fromGuid, entry.getValue()));
+            boolean separate = false;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                separate = appendSeparator(sb, separate, getDelimiter());
+                sb.append(entry.getKey()).append('=');
+                appendValue(sb, fromGuid, entry.getValue());
             }
-            return getDelimitedList(values);
         } else if (value instanceof Asset) {
-            return serializeAssetRefToCSV((Asset) value);
+            appendAssetRef(sb, (Asset) value);
         } else if (value instanceof AtlanEnum) {
-            return ((AtlanEnum) value).getValue();
+            sb.append(((AtlanEnum) value).getValue());
         } else if (value instanceof AtlanStruct) {
-            return serializeStructToCSV((AtlanStruct) value);
+            sb.append(serializeStructToCSV((AtlanStruct) value));
         } else if (value != null) {
             // For everything else, just turn it directly into a string
-            return value.toString();
+            sb.append(value);
         }
-        // If we fall through, return an empty string
-        return "";
+    }
+
+    private void appendAssetRefs(StringBuilder sb, Collection<Asset> assets, String separator) {
+        boolean separate = false;
+        for (Asset asset : assets) {
+            separate = appendSeparator(sb, separate, separator);
+            appendAssetRef(sb, asset);
+        }
+    }
+
+    private static boolean appendSeparator(StringBuilder sb, boolean separate, String separator) {
+        if (separate) {
+            sb.append(separator);
+        }
+        return true;
     }
 
     /**
@@ -340,6 +417,17 @@ public abstract class AbstractReporter {
         }
     }
 
+    /**
+     * Append the CSV-serialized form of the provided asset reference to the buffer, as serialized by
+     * {@link #serializeAssetRefToCSV(Asset)} (so that any override of it also applies to each reference).
+     *
+     * @param sb buffer into which to serialize the reference
+     * @param asset the related asset to be serialized
+     */
+    private void appendAssetRef(StringBuilder sb, Asset asset) {
+        sb.append(serializeAssetRefToCSV(asset));
+    }
+
     /**
      * Serialize the provided struct into a form that can be stored in a single cell of CSV.
      * Note: this is not yet implemented!
@@ -351,6 +439,19 @@ public abstract class AbstractReporter {
         return struct.toJson(Atlan.getDefaultClient());
     }
 
+    /**
+     * Build a client through which to write the report to S3.
+     *
+     * @return an S3 client for the configured region (and endpoint, if any)
+     */
+    protected S3Client getS3Client() {
+        S3ClientBuilder builder = S3Client.builder().region(getRegion());
+        if (_endpoint != null && !_endpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(_endpoint)).forcePathStyle(true);
+        }
+        return builder.build();
+    }
+
     public void setFilename(String _filename) {
         this._filename = _filename;
     }
@@ -374,4 +475,8 @@ public abstract class AbstractReporter {
     public String getDelimiter() {
         return _delimiter;
     }
+
+    public int getMaxRowsPerSheet() {
+        return _maxRowsPerSheet;
+    }
 }
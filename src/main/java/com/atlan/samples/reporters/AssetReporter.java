@@ -2,17 +2,36 @@
 /* Copyright 2023 Atlan Pte. Ltd. */
 package com.atlan.samples.reporters;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import co.elastic.clients.elasticsearch._types.SortOrder;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.atlan.Atlan;
+import com.atlan.cache.ReflectionCache;
 import com.atlan.exception.AtlanException;
 import com.atlan.model.assets.Asset;
+import com.atlan.model.enums.AtlanEnum;
 import com.atlan.model.fields.AtlanField;
 import com.atlan.model.fields.CustomMetadataField;
 import com.atlan.model.search.FluentSearch;
 import com.atlan.samples.writers.CSVWriter;
+import com.atlan.samples.writers.GuidSet;
 import com.atlan.samples.writers.RowGenerator;
+import com.atlan.samples.writers.S3Writer;
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.reader.CsvRow;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
@@ -20,6 +39,21 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public abstract class AssetReporter extends AbstractReporter implements RequestHandler<Map<String, String>, String> {
 
+    /** Probability of falsely reporting a duplicate, when only approximately detecting duplicates. */
+    private static final double DUPLICATE_FALSE_POSITIVE_RATE = 0.0001;
+
+    /** Maximum number of slices into which to split an export (one for each leading hex digit of a GUID). */
+    private static final int MAX_SLICES = 16;
+
+    /** Default margin (in milliseconds) by which to move back the watermark, for changes not yet searchable. */
+    private static final long DEFAULT_WATERMARK_LAG = 60_000;
+
+    private boolean _approximateDuplicates = false;
+    private int _slices = 1;
+    private boolean _incremental = false;
+    private String _previousFile = null;
+    private long _watermarkLag = DEFAULT_WATERMARK_LAG;
+
     /**
      * Produce a query that will retrieve all the assets you want to extract.
      *
@@ -55,24 +89,102 @@ public abstract class AssetReporter extends AbstractReporter implements RequestH
     /**
      * Produces a function that will translate all the attributes from each asset
      * to string-encoded results that can be placed into the CSV.
+     * The accessors for each attribute are resolved only once for each type of asset.
      *
      * @param event context passed through the Lambda invocation event (or environment variables)
      * @return a row generator that translates from asset to a row of strings for the CSV
      */
     public RowGenerator getAssetToValueTranslator(Map<String, String> event) {
+        List<AtlanField> columns = new ArrayList<>();
+        columns.add(Asset.QUALIFIED_NAME);
+        columns.add(Asset.TYPE_NAME);
+        for (AtlanField field : getAttributesToExtract(event)) {
+            if (!field.equals(Asset.QUALIFIED_NAME) && !field.equals(Asset.TYPE_NAME)) {
+                columns.add(field);
+            }
+        }
+        Map<Class<?>, FieldExtractor[]> plans = new ConcurrentHashMap<>();
         return (a) -> {
-            List<String> values = new ArrayList<>();
-            values.add(getStringValueForField(a, Asset.QUALIFIED_NAME));
-            values.add(getStringValueForField(a, Asset.TYPE_NAME));
-            for (AtlanField field : getAttributesToExtract(event)) {
-                if (!field.equals(Asset.QUALIFIED_NAME) && !field.equals(Asset.TYPE_NAME)) {
-                    values.add(getStringValueForField(a, field));
+            FieldExtractor[] plan = plans.computeIfAbsent(a.getClass(), c -> compilePlan(c, columns));
+            String[] row = new String[plan.length];
+            for (int i = 0; i < plan.length; i++) {
+                row[i] = plan[i].extract(a);
+            }
+            return Arrays.asList(row);
+        };
+    }
+
+    /**
+     * Resolve how to extract each of the provided fields from a given type of asset.
+     *
+     * @param assetClass the type of asset
+     * @param fields to extract from the asset
+     * @return an extractor for each field, in the same order as the fields
+     */
+    private FieldExtractor[] compilePlan(Class<?> assetClass, List<AtlanField> fields) {
+        FieldExtractor[] plan = new FieldExtractor[fields.size()];
+        for (int i = 0; i < plan.length; i++) {
+            plan[i] = compileExtractor(assetClass, fields.get(i));
+        }
+        return plan;
+    }
+
+    private FieldExtractor compileExtractor(Class<?> assetClass, AtlanField field) {
+        if (field instanceof CustomMetadataField) {
+            CustomMetadataField cmf = (CustomMetadataField) field;
+            String setName = cmf.getSetName();
+            String attributeName = cmf.getAttributeName();
+            return (a) -> serializeValueToCSV(a.getGuid(), a.getCustomMetadata(setName, attributeName));
+        }
+        String deserializedName = ReflectionCache.getDeserializedName(assetClass, field.getAtlanFieldName());
+        Method getter = ReflectionCache.getGetter(assetClass, deserializedName);
+        if (getter == null) {
+            // Fallback to resolving the field for every asset (which will log the problem)
+            return (a) -> getStringValueForField(a, field);
+        }
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.publicLookup()
+                    .unreflect(getter)
+                    .asType(MethodType.methodType(Object.class, Asset.class));
+        } catch (IllegalAccessException e) {
+            log.warn("Unable to access attribute {} directly on {} — falling back.", deserializedName, assetClass, e);
+            return (a) -> getStringValueForField(a, field);
+        }
+        Class<?> valueType = getter.getReturnType();
+        return (a) -> {
+            try {
+                // Note: the handle's type is exactly (Asset)Object, so it can be invoked without any adaptation
+                Object value = handle.invokeExact(a);
+                if (value == null) {
+                    return "";
+                } else if (valueType == String.class) {
+                    return (String) value;
+                } else if (AtlanEnum.class.isAssignableFrom(valueType)) {
+                    return ((AtlanEnum) value).getValue();
+                } else {
+                    return serializeValueToCSV(a.getGuid(), value);
                 }
+            } catch (Throwable e) {
+                log.error(
+                        "Unable to retrieve attribute {} on: {}::{}",
+                        field.getAtlanFieldName(),
+                        a.getTypeName(),
+                        a.getQualifiedName(),
+                        e);
+                return "";
             }
-            return values;
         };
     }
 
+    /**
+     * Extracts the string-encoded value of a single field from an asset.
+     */
+    @FunctionalInterface
+    private interface FieldExtractor {
+        String extract(Asset asset);
+    }
+
     /** {@inheritDoc} */
     @Override
     public String handleRequest(Map<String, String> event, Context context) {
@@ -84,31 +196,279 @@ public abstract class AssetReporter extends AbstractReporter implements RequestH
 
         parseParametersFromEvent(event);
 
-        FluentSearch.FluentSearchBuilder<?, ?> assets = getAssetsToExtract(event)
-                .pageSize(getBatchSize())
-                .includesOnResults(getAttributesToExtract(event))
-                .includeOnRelations(Asset.QUALIFIED_NAME)
-                .includesOnRelations(getRelatedAttributesToExtract(event));
+        List<String> headerNames = Stream.of(Asset.QUALIFIED_NAME, Asset.TYPE_NAME)
+                .map(AtlanField::getAtlanFieldName)
+                .collect(Collectors.toList());
+        headerNames.addAll(getAttributesToExtract(event).stream()
+                .map(AssetReporter::getHeaderForField)
+                .collect(Collectors.toList()));
+
+        // Note: the watermark for the next run is (a margin before) when this run started, so that anything
+        // changed during this run — or changed just before it, but not yet searchable — will be picked up by
+        // the next run. (Any overlap is harmless, as changes are merged by key.)
+        long start = System.currentTimeMillis();
+        boolean success;
+        long watermark = _incremental ? getPreviousWatermark(headerNames) : 0;
+        if (watermark > 0) {
+            success = exportChanges(event, headerNames, watermark);
+        } else {
+            success = exportAll(event, headerNames);
+        }
+        long finish = System.currentTimeMillis();
+        log.info("Total time taken: {} ms", finish - start);
+        if (success && _incremental) {
+            saveWatermark(Math.max(0, start - _watermarkLag));
+        }
 
-        try (CSVWriter csv = new CSVWriter(getFilename())) {
-            List<String> headerNames = Stream.of(Asset.QUALIFIED_NAME, Asset.TYPE_NAME)
-                    .map(AtlanField::getAtlanFieldName)
-                    .collect(Collectors.toList());
-            headerNames.addAll(getAttributesToExtract(event).stream()
-                    .map(AssetReporter::getHeaderForField)
-                    .collect(Collectors.toList()));
+        return getFilename();
+    }
+
+    /**
+     * Export all the assets into a CSV file.
+     *
+     * @param event context passed through the Lambda invocation event (or environment variables)
+     * @param headerNames names of the columns in the CSV file
+     * @return true if the export completed, otherwise false
+     */
+    private boolean exportAll(Map<String, String> event, List<String> headerNames) {
+        FluentSearch.FluentSearchBuilder<?, ?> assets = getSearch(event);
+        try (CSVWriter csv = openCSV()) {
             csv.writeHeader(headerNames);
-            long start = System.currentTimeMillis();
-            csv.streamAssets(assets.stream(true), getAssetToValueTranslator(event), assets.count(), getBatchSize());
-            long finish = System.currentTimeMillis();
-            log.info("Total time taken: {} ms", finish - start);
+            long count = assets.count();
+            GuidSet seen = _approximateDuplicates
+                    ? GuidSet.approximate(count, DUPLICATE_FALSE_POSITIVE_RATE)
+                    : GuidSet.exact(count);
+            Stream<Asset> stream;
+            AtomicBoolean incomplete = new AtomicBoolean(false);
+            if (_slices > 1) {
+                // Stream each slice concurrently, but each one sequentially (stable) within itself
+                log.info("Splitting the export into {} slices...", _slices);
+                stream = getSlices(event).parallelStream().flatMap(slice -> {
+                    try {
+                        return slice.stream();
+                    } catch (AtlanException e) {
+                        log.error("Unable to stream a slice of the assets — the export will be incomplete.", e);
+                        incomplete.set(true);
+                        return Stream.empty();
+                    }
+                });
+            } else {
+                stream = assets.stream(true);
+            }
+            try {
+                csv.streamAssets(stream, getAssetToValueTranslator(event), count, getBatchSize(), seen);
+            } catch (RuntimeException e) {
+                // For example, a failure to retrieve any page after the first (within the stream itself)
+                log.error("Unable to stream all the assets — the export will be incomplete.", e);
+                incomplete.set(true);
+            }
+            if (incomplete.get()) {
+                // Never publish (or save a watermark for) an export that is missing any of the assets
+                log.error("Export of assets is incomplete, as some of the assets failed to stream: {}", getFilename());
+                return false;
+            }
+            csv.complete();
+            return true;
         } catch (AtlanException e) {
             log.error("Unable to stream assets.", e);
         } catch (IOException e) {
             log.error("Unable to create or write to file: {}", getFilename());
         }
+        return false;
+    }
 
-        return getFilename();
+    /**
+     * Export only the assets that have changed (or been deleted) since the provided watermark, merging
+     * them into the previous export to produce a complete, current CSV file. Only the changed assets are
+     * held in memory: the rest of the previous export is streamed through as-is. Any asset in the previous
+     * export that was updated since the watermark but is no longer among the assets to extract (because it
+     * was deleted, or no longer matches the export's filters) is dropped from the merged export.
+     * Note: assets that were purged (hard-deleted) since the previous export cannot be detected, so it is
+     * still worth running a full export every so often.
+     *
+     * @param event context passed through the Lambda invocation event (or environment variables)
+     * @param headerNames names of the columns in the CSV file
+     * @param watermark (epoch-style time) as of which the previous export was produced
+     * @return true if the export completed, otherwise false
+     */
+    private boolean exportChanges(Map<String, String> event, List<String> headerNames, long watermark) {
+        log.info("Exporting only the assets changed since {}, merged into: {}", watermark, _previousFile);
+        Set<List<String>> touched = ConcurrentHashMap.newKeySet();
+        Map<List<String>, Iterable<String>> changed = new ConcurrentHashMap<>();
+        try {
+            // Find every asset updated since the watermark, whatever its status and whether or not it matches
+            // the export's filters. (This is done first, so that anything updated after it is either already
+            // in the changed assets below, or left to be picked up by the next export.)
+            Atlan.getDefaultClient()
+                    .assets
+                    .select(true)
+                    .where(Asset.UPDATE_TIME.gt(watermark))
+                    .pageSize(getBatchSize())
+                    .sort(Asset.GUID.order(SortOrder.Asc))
+                    .stream(true)
+                    .forEach(a -> touched.add(getKey(a.getTypeName(), a.getQualifiedName())));
+            RowGenerator translator = getAssetToValueTranslator(event);
+            getSearch(event)
+                    .where(Asset.UPDATE_TIME.gt(watermark))
+                    .sort(Asset.GUID.order(SortOrder.Asc))
+                    .stream(true)
+                    .forEach(a -> changed.put(
+                            getKey(a.getTypeName(), a.getQualifiedName()), translator.valuesFromAsset(a)));
+        } catch (AtlanException e) {
+            log.error("Unable to find the assets changed since {}.", watermark, e);
+            return false;
+        }
+        log.info(" ... found {} changed assets, of which {} are to be exported.", touched.size(), changed.size());
+
+        long kept = 0;
+        long updated = 0;
+        long removed = 0;
+        try (CsvReader previous = CsvReader.builder().skipEmptyRows(true).build(Paths.get(_previousFile), UTF_8);
+                CSVWriter csv = openCSV()) {
+            csv.writeHeader(headerNames);
+            boolean header = true;
+            for (CsvRow row : previous) {
+                if (header) {
+                    header = false;
+                    continue;
+                }
+                List<String> key = getKey(row.getField(1), row.getField(0));
+                Iterable<String> current = changed.remove(key);
+                if (current != null) {
+                    csv.writeRow(current);
+                    updated++;
+                } else if (touched.contains(key)) {
+                    // Changed since the previous export, but no longer one of the assets to extract
+                    removed++;
+                } else {
+                    csv.writeRow(row.getFields());
+                    kept++;
+                }
+            }
+            // Anything changed that was not in the previous export must be new
+            for (Iterable<String> values : changed.values()) {
+                csv.writeRow(values);
+            }
+            csv.complete();
+        } catch (IOException e) {
+            log.error("Unable to merge {} into file: {}", _previousFile, getFilename(), e);
+            return false;
+        }
+        log.info(
+                "Total assets: {} unchanged, {} updated, {} added, {} removed.",
+                kept,
+                updated,
+                changed.size(),
+                removed);
+        return true;
+    }
+
+    /**
+     * Retrieve the watermark as of which the previous export was produced, if it can be merged into.
+     *
+     * @param headerNames names of the columns in the CSV file
+     * @return the watermark (epoch-style time) of the previous export, or 0 if there is no usable previous export
+     */
+    private long getPreviousWatermark(List<String> headerNames) {
+        if (_previousFile == null) {
+            log.info("No PREVIOUS_FILE provided — running a full export.");
+            return 0;
+        }
+        Path previous = Paths.get(_previousFile);
+        Path watermark = getWatermarkFile(_previousFile);
+        if (!Files.isRegularFile(previous) || !Files.isRegularFile(watermark)) {
+            log.info("No previous export (and watermark) found for {} — running a full export.", _previousFile);
+            return 0;
+        }
+        try (CsvReader csv = CsvReader.builder().skipEmptyRows(true).build(previous, UTF_8)) {
+            List<String> previousHeader =
+                    csv.stream().findFirst().map(CsvRow::getFields).orElse(Collections.emptyList());
+            if (!previousHeader.equals(headerNames)) {
+                log.warn(
+                        "Columns of the previous export {} differ from this export — running a full export.",
+                        previous);
+                return 0;
+            }
+            return Long.parseLong(Files.readString(watermark, UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Unable to read the previous export {} — running a full export.", previous, e);
+            return 0;
+        }
+    }
+
+    /**
+     * Save the watermark for this export, so that a subsequent export can merge in only what changed since.
+     *
+     * @param watermark (epoch-style time) as of which this export was produced
+     */
+    private void saveWatermark(long watermark) {
+        Path location = getWatermarkFile(getFilename());
+        try {
+            Files.writeString(location, String.valueOf(watermark), UTF_8);
+            log.info("Saved watermark for the next incremental export to: {}", location);
+        } catch (IOException e) {
+            log.error("Unable to save watermark to: {}", location, e);
+        }
+    }
+
+    private static Path getWatermarkFile(String export) {
+        return Paths.get(export + ".watermark");
+    }
+
+    private static List<String> getKey(String typeName, String qualifiedName) {
+        return List.of(typeName, qualifiedName);
+    }
+
+    /**
+     * Open the CSV file into which to write the report: straight into S3 (if a bucket was provided),
+     * or otherwise to a local file. (In either case, the object or file is only created once the writer
+     * is completed — so an incomplete report never replaces a previous one.)
+     *
+     * @return the CSV writer
+     * @throws IOException on any errors creating or accessing the file
+     */
+    private CSVWriter openCSV() throws IOException {
+        if (getBucket() != null) {
+            S3Writer s3 = new S3Writer(getS3Client());
+            return new CSVWriter(s3.openStream(getBucket(), getFilename(), S3Writer.CSV_CONTENT_TYPE), ',');
+        } else {
+            return new CSVWriter(getFilename(), ',', true);
+        }
+    }
+
+    /**
+     * Build the complete search for all the assets to extract, including the attributes to retrieve for each.
+     *
+     * @param event context passed through the Lambda invocation event (or environment variables)
+     * @return the search for all assets to extract
+     */
+    private FluentSearch.FluentSearchBuilder<?, ?> getSearch(Map<String, String> event) {
+        return getAssetsToExtract(event)
+                .pageSize(getBatchSize())
+                .includesOnResults(getAttributesToExtract(event))
+                .includeOnRelations(Asset.QUALIFIED_NAME)
+                .includesOnRelations(getRelatedAttributesToExtract(event));
+    }
+
+    /**
+     * Split the search for all the assets to extract into disjoint slices, by the leading hex digit of each
+     * asset's GUID. Together the slices cover every asset exactly once, and each slice is sorted by GUID so
+     * that paging through it is stable — so there can be no page skew.
+     *
+     * @param event context passed through the Lambda invocation event (or environment variables)
+     * @return the searches for each slice of the assets to extract
+     */
+    private List<FluentSearch.FluentSearchBuilder<?, ?>> getSlices(Map<String, String> event) {
+        List<FluentSearch.FluentSearchBuilder<?, ?>> slices = new ArrayList<>();
+        for (int i = 0; i < _slices; i++) {
+            FluentSearch.FluentSearchBuilder<?, ?> slice = getSearch(event);
+            // Spread the 16 leading hex digits across the slices, round-robin
+            for (int digit = i; digit < MAX_SLICES; digit += _slices) {
+                slice.whereSome(Asset.GUID.startsWith(Character.forDigit(digit, 16) + ""));
+            }
+            slices.add(slice.minSomes(1).sort(Asset.GUID.order(SortOrder.Asc)));
+        }
+        return slices;
     }
 
     private static String getHeaderForField(AtlanField field) {
@@ -143,6 +503,38 @@ public abstract class AssetReporter extends AbstractReporter implements RequestH
             // Note that this only sets a default prefix of 'asset-report', only
             // if there is no FILE_PREFIX defined in the event itself
             setFilenameWithPrefix(event, "asset-report", "csv");
+            // Only approximately detect duplicate assets (using much less memory) if requested
+            String duplicates = event.getOrDefault("DUPLICATE_DETECTION", "EXACT");
+            _approximateDuplicates = duplicates.toUpperCase(Locale.ROOT).equals("APPROXIMATE");
+            // Only export what changed since the previous export (merged into it), if requested
+            String incremental = event.getOrDefault("INCREMENTAL", "false");
+            _incremental = incremental.toUpperCase(Locale.ROOT).equals("TRUE");
+            _previousFile = event.getOrDefault("PREVIOUS_FILE", null);
+            if (_incremental && getBucket() != null) {
+                // The previous export and its watermark are only ever read and written locally
+                log.warn(
+                        "INCREMENTAL exports are only supported for local files, not with a BUCKET — running a full export.");
+                _incremental = false;
+            }
+            String lag = event.getOrDefault("WATERMARK_LAG_MS", "" + DEFAULT_WATERMARK_LAG);
+            try {
+                _watermarkLag = Math.max(0, Long.parseLong(lag));
+            } catch (NumberFormatException e) {
+                log.warn(
+                        "Unable to determine a number from the WATERMARK_LAG_MS value of '{}', falling back to a default of {}.",
+                        lag,
+                        DEFAULT_WATERMARK_LAG);
+                _watermarkLag = DEFAULT_WATERMARK_LAG;
+            }
+            String slices = event.getOrDefault("SLICES", "1");
+            try {
+                _slices = Math.max(1, Math.min(MAX_SLICES, Integer.parseInt(slices)));
+            } catch (NumberFormatException e) {
+                log.warn(
+                        "Unable to determine a number from the SLICES value of '{}', falling back to a default of 1.",
+                        slices);
+                _slices = 1;
+            }
         }
     }
 }
@@ -2,7 +2,7 @@
 /* Copyright 2023 Atlan Pte. Ltd. */
 package com.atlan.samples.reporters;
 
-import static com.atlan.samples.writers.ExcelWriter.DataCell;
+import static com.atlan.samples.writers.ExcelWriter.RowBuffer;
 
 import co.elastic.clients.elasticsearch._types.SortOrder;
 import com.amazonaws.services.lambda.runtime.Context;
@@ -15,16 +15,24 @@ import com.atlan.model.core.CustomMetadataAttributes;
 import com.atlan.model.fields.AtlanField;
 import com.atlan.model.search.*;
 import com.atlan.model.typedefs.AttributeDef;
+import com.atlan.samples.loaders.caches.GlossaryHierarchyIndex;
 import com.atlan.samples.writers.ExcelWriter;
+import com.atlan.samples.writers.S3MultipartOutputStream;
 import com.atlan.samples.writers.S3Writer;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.Sheet;
-import software.amazon.awssdk.services.s3.S3Client;
 
 @Slf4j
 public class EnrichmentReporter extends AbstractReporter implements RequestHandler<Map<String, String>, String> {
@@ -48,8 +56,10 @@ public class EnrichmentReporter extends AbstractReporter implements RequestHandl
     private static boolean DIRECT_ATLAN_TAG_ONLY = false;
 
     private static final Map<String, String> categoryGuidToPath = new ConcurrentHashMap<>();
-    private static final Map<String, Glossary> glossaryGuidToDetails = new ConcurrentHashMap<>();
-    private static final Map<String, GlossaryTerm> termGuidToDetails = new ConcurrentHashMap<>();
+    // Only the details needed to cross-reference glossaries and terms are cached (the full details
+    // of each are streamed only when their own sheet is written)
+    private static final Map<String, String> glossaryGuidToName = new ConcurrentHashMap<>();
+    private static final Map<String, String> termGuidToReference = new ConcurrentHashMap<>();
     private static final Map<String, String> processed = new ConcurrentHashMap<>();
 
     static final List<AtlanField> ENRICHMENT_ATTRIBUTES = List.of(
@@ -228,7 +238,7 @@ public class EnrichmentReporter extends AbstractReporter implements RequestHandl
             Map<String, String> CATEGORY_ENRICHMENT = createCategoryEnrichmentHeader();
             Map<String, String> TERM_ENRICHMENT = createTermEnrichmentHeader();
 
-            ExcelWriter xlsx = new ExcelWriter(getBatchSize());
+            ExcelWriter xlsx = new ExcelWriter(getBatchSize(), getMaxRowsPerSheet());
 
             // Before anything else, cache the glossaries and terms (for x-ref purposes)
             cacheGlossaries();
@@ -236,25 +246,57 @@ public class EnrichmentReporter extends AbstractReporter implements RequestHandl
 
             Sheet assets = xlsx.createSheet("Asset enrichment");
             xlsx.addHeader(assets, ASSET_ENRICHMENT);
-            getAssets(xlsx, assets);
-
             Sheet glossaries = xlsx.createSheet("Glossary enrichment");
             xlsx.addHeader(glossaries, GLOSSARY_ENRICHMENT);
-            getGlossaries(xlsx, glossaries);
-
             Sheet categories = xlsx.createSheet("Category enrichment");
             xlsx.addHeader(categories, CATEGORY_ENRICHMENT);
-            findCategories(xlsx, categories);
-
             Sheet terms = xlsx.createSheet("Term enrichment");
             xlsx.addHeader(terms, TERM_ENRICHMENT);
-            getTerms(xlsx, terms);
+
+            // Each sheet is then produced concurrently: every sheet's results are fetched by its own task, and only
+            // the appending of the rows is left to the workbook's single writer thread (as the sheets share the
+            // workbook's styles), so they do not need to wait on each other — except that terms need the
+            // category paths, to list the categories of each term
+            CountDownLatch categoryPaths = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<?>> sheets = new ArrayList<>();
+                sheets.add(executor.submit(() -> {
+                    getAssets(xlsx, assets);
+                    return null;
+                }));
+                sheets.add(executor.submit(() -> {
+                    getGlossaries(xlsx, glossaries);
+                    return null;
+                }));
+                sheets.add(executor.submit(() -> {
+                    try {
+                        findCategories(xlsx, categories, categoryPaths);
+                    } finally {
+                        // Never leave the terms waiting, even if the categories could not be retrieved
+                        categoryPaths.countDown();
+                    }
+                    return null;
+                }));
+                sheets.add(executor.submit(() -> {
+                    categoryPaths.await();
+                    getTerms(xlsx, terms);
+                    return null;
+                }));
+                awaitAll(sheets);
+            } finally {
+                executor.shutdown();
+            }
 
             // If a bucket was provided, we'll write out to S3
             if (getBucket() != null) {
-                S3Client s3Client = S3Client.builder().region(getRegion()).build();
-                S3Writer s3 = new S3Writer(s3Client);
-                s3.putExcelFile(xlsx.asByteArray(), getBucket(), getFilename());
+                S3Writer s3 = new S3Writer(getS3Client());
+                try (S3MultipartOutputStream out =
+                        s3.openStream(getBucket(), getFilename(), S3Writer.EXCEL_CONTENT_TYPE)) {
+                    xlsx.writeTo(out);
+                    // Only publish the report once it has been written in full
+                    out.complete();
+                }
             } else {
                 // Otherwise we'll write out to a file (locally)
                 log.info("Writing report to file: {}", getFilename());
@@ -272,18 +314,43 @@ public class EnrichmentReporter extends AbstractReporter implements RequestHandl
         return getFilename();
     }
 
+    /**
+     * Wait for all the provided sheets to be produced.
+     *
+     * @param sheets to wait for
+     * @throws AtlanException on any problems retrieving the details for any of the sheets
+     */
+    private void awaitAll(List<Future<?>> sheets) throws AtlanException {
+        for (Future<?> sheet : sheets) {
+            try {
+                sheet.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof AtlanException) {
+                    throw (AtlanException) e.getCause();
+                } else if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("Unable to produce one of the sheets of the report.", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the sheets of the report.", e);
+            }
+        }
+    }
+
     void cacheGlossaries() throws AtlanException {
         FluentSearch.FluentSearchBuilder<?, ?> builder = Glossary.select()
                 .pageSize(getBatchSize())
+                .includeOnResults(Asset.NAME)
                 .sort(Asset.NAME.order(SortOrder.Asc))
-                .sort(Asset.GUID.order(SortOrder.Asc))
-                .includesOnResults(ENRICHMENT_ATTRIBUTES)
-                ._includesOnResults(CM_ATTRIBUTES_FOR_SEARCH)
-                .includesOnRelations(RELATION_ATTRIBUTES);
+                .sort(Asset.GUID.order(SortOrder.Asc));
         final long totalResults = builder.count();
         AtomicLong count = new AtomicLong(0);
         log.info(
-                "Retrieving {} glossaries from {} in batches of: {}", totalResults, Atlan.getBaseUrl(), getBatchSize());
+                "Caching {} glossary names from {} in batches of: {}",
+                totalResults,
+                Atlan.getBaseUrl(),
+                getBatchSize());
         builder.stream(true).filter(a -> a instanceof Glossary).forEach(g -> {
             long localCount = count.getAndIncrement();
             if (localCount % getBatchSize() == 0) {
@@ -291,30 +358,20 @@ public class EnrichmentReporter extends AbstractReporter implements RequestHandl
                         " ... processed {}/{} ({}%)",
                         localCount, totalResults, Math.round(((double) localCount / totalResults) * 100));
             }
-            glossaryGuidToDetails.put(g.getGuid(), (Glossary) g);
+            glossaryGuidToName.put(g.getGuid(), g.getName());
         });
     }
 
     void cacheTerms() throws AtlanException {
         FluentSearch.FluentSearchBuilder<?, ?> builder = GlossaryTerm.select()
                 .pageSize(getBatchSize())
-                .sort(Asset.NAME.order(SortOrder.Asc))
-                .sort(Asset.GUID.order(SortOrder.Asc))
-                .includesOnResults(ENRICHMENT_ATTRIBUTES)
-                ._includesOnResults(CM_ATTRIBUTES_FOR_SEARCH)
+                .includeOnResults(Asset.NAME)
                 .includeOnResults(GlossaryTerm.ANCHOR)
-                .includeOnResults(GlossaryTerm.CATEGORIES)
-                .includeOnResults(GlossaryTerm.SEE_ALSO)
-                .includeOnResults(GlossaryTerm.PREFERRED_TERMS)
-                .includeOnResults(GlossaryTerm.SYNONYMS)
-                .includeOnResults(GlossaryTerm.ANTONYMS)
-                .includeOnResults(GlossaryTerm.TRANSLATED_TERMS)
-                .includeOnResults(GlossaryTerm.VALID_VALUES_FOR)
-                .includeOnResults(GlossaryTerm.CLASSIFIES)
-                .includesOnRelations(RELATION_ATTRIBUTES);
+                .sort(Asset.NAME.order(SortOrder.Asc))
+                .sort(Asset.GUID.order(SortOrder.Asc));
         final long totalResults = builder.count();
         AtomicLong count = new AtomicLong(0);
-        log.info("Retrieving {} terms from {} in batches of: {}", totalResults, Atlan.getBaseUrl(), getBatchSize());
+        log.info("Caching {} term names from {} in batches of: {}", totalResults, Atlan.getBaseUrl(), getBatchSize());
         builder.stream(true).filter(a -> a instanceof GlossaryTerm).forEach(t -> {
             long localCount = count.getAndIncrement();
             if (localCount % getBatchSize() == 0) {
@@ -322,7 +379,7 @@ public class EnrichmentReporter extends AbstractReporter implements RequestHandl
                         " ... processed {}/{} ({}%)",
                         localCount, totalResults, Math.round(((double) localCount / totalResults) * 100));
             }
-            termGuidToDetails.put(t.getGuid(), (GlossaryTerm) t);
+            termGuidToReference.put(t.getGuid(), t.getName() + "@" + getGlossaryName((GlossaryTerm) t));
         });
     }
 
@@ -352,87 +409,185 @@ public class EnrichmentReporter extends AbstractReporter implements RequestHandl
                 totalResults,
                 Atlan.getBaseUrl(),
                 getBatchSize());
-        builder.stream().forEach(result -> {
-            long localCount = count.getAndIncrement();
-            if (localCount % getBatchSize() == 0) {
-                log.info(
-                        " ... processed {}/{} ({}%)",
-                        localCount, totalResults, Math.round(((double) localCount / totalResults) * 100));
+        // Fetch the pages in parallel (a bounded number of pages ahead), but consume them in the order of the
+        // pages, so that the rows come out in the same order on every run: the rows are also built in parallel,
+        // with the workbook restoring their order as it appends each one to the sheet
+        IndexSearchRequest request = builder.sort(Asset.GUID.order(SortOrder.Asc)).toRequest();
+        try (PagePrefetcher pages = new PagePrefetcher(client, request, getBatchSize(), totalResults)) {
+            Stream<Asset> results = StreamSupport.stream(
+                            Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED), false)
+                    .flatMap(List::stream)
+                    .filter(result -> processed.putIfAbsent(result.getGuid(), result.getQualifiedName()) == null);
+            xlsx.appendRows(sheet, results, (result, row) -> {
+                long localCount = count.getAndIncrement();
+                if (localCount % getBatchSize() == 0) {
+                    log.info(
+                            " ... processed {}/{} ({}%)",
+                            localCount, totalResults, Math.round(((double) localCount / totalResults) * 100));
+                }
+                addAssetRow(row, result);
+            });
+        }
+    }
+
+    /**
+     * Fetches the pages of results for a (stably-sorted) search concurrently, a bounded number of pages
+     * ahead of the page being consumed, while still returning the pages in order.
+     */
+    private static final class PagePrefetcher implements Iterator<List<Asset>>, AutoCloseable {
+
+        /** Maximum number of pages to fetch concurrently, ahead of the page being consumed. */
+        private static final int PAGES_AHEAD = 8;
+
+        private final AtlanClient client;
+        private final IndexSearchRequest request;
+        private final int pageSize;
+        private final long pages;
+        private final ExecutorService fetchers;
+        private final Deque<Future<List<Asset>>> ahead = new ArrayDeque<>();
+        private long nextPage = 0;
+
+        PagePrefetcher(AtlanClient client, IndexSearchRequest request, int pageSize, long totalResults) {
+            this.client = client;
+            this.request = request;
+            this.pageSize = pageSize;
+            this.pages = (totalResults + pageSize - 1) / pageSize;
+            this.fetchers = Executors.newFixedThreadPool(PAGES_AHEAD);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            fetchAhead();
+            return !ahead.isEmpty();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public List<Asset> next() {
+            fetchAhead();
+            Future<List<Asset>> page = ahead.poll();
+            if (page == null) {
+                throw new NoSuchElementException();
             }
-            String guid = result.getGuid();
-            if (!processed.containsKey(guid)) {
-                List<Asset> childAssets = getChildAssets(result);
-                long descriptionCounts = 0;
-                for (Asset child : childAssets) {
-                    String childDesc = getDescription(child);
-                    descriptionCounts += !childDesc.isEmpty() ? 1 : 0;
-                }
-                List<DataCell> row = new ArrayList<>();
-                row.add(DataCell.of(result.getConnectorType()));
-                row.add(DataCell.of(result.getQualifiedName()));
-                row.add(DataCell.of(result.getTypeName()));
-                row.add(DataCell.of(result.getName()));
-                row.add(DataCell.of(result.getDescription()));
-                row.add(DataCell.of(result.getUserDescription()));
-                row.add(DataCell.of(getUserOwners(result)));
-                row.add(DataCell.of(getGroupOwners(result)));
-                row.add(DataCell.of(result.getCertificateStatus()));
-                row.add(DataCell.of(result.getCertificateStatusMessage()));
-                row.add(DataCell.of(result.getCertificateUpdatedBy()));
-                row.add(DataCell.of(getFormattedDateTime(result.getCertificateUpdatedAt())));
-                row.add(DataCell.of(result.getAnnouncementType()));
-                row.add(DataCell.of(result.getAnnouncementTitle()));
-                row.add(DataCell.of(result.getAnnouncementMessage()));
-                row.add(DataCell.of(result.getAnnouncementUpdatedBy()));
-                row.add(DataCell.of(getFormattedDateTime(result.getAnnouncementUpdatedAt())));
-                row.add(DataCell.of(result.getCreatedBy()));
-                row.add(DataCell.of(getFormattedDateTime(result.getCreateTime())));
-                row.add(DataCell.of(result.getUpdatedBy()));
-                row.add(DataCell.of(getFormattedDateTime(result.getUpdateTime())));
-                row.add(DataCell.of(getREADME(result)));
-                row.add(DataCell.of(getTerms(result.getAssignedTerms(), termGuidToDetails)));
-                row.add(DataCell.of(getCount(result.getLinks())));
-                row.add(DataCell.of(DIRECT_ATLAN_TAG_ONLY ? getDirectAtlanTags(result) : getAtlanTags(result)));
-                row.add(DataCell.of(childAssets.size()));
-                row.add(DataCell.of(descriptionCounts));
-                row.add(DataCell.of(getAssetLink(guid)));
-                addCustomMetadata(row, result);
-                xlsx.appendRow(sheet, row);
-                processed.put(guid, result.getQualifiedName());
+            try {
+                return page.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while fetching a page of assets.", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Unable to fetch a page of assets.", e.getCause());
             }
-        });
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void close() {
+            fetchers.shutdownNow();
+        }
+
+        private void fetchAhead() {
+            while (ahead.size() < PAGES_AHEAD && nextPage < pages) {
+                IndexSearchDSL dsl = request.getDsl().toBuilder()
+                        .from((int) (nextPage++ * pageSize))
+                        .size(pageSize)
+                        .build();
+                IndexSearchRequest page = request.toBuilder().dsl(dsl).build();
+                ahead.add(fetchers.submit(() -> {
+                    List<Asset> assets = page.search(client).getAssets();
+                    return assets == null ? Collections.<Asset>emptyList() : assets;
+                }));
+            }
+        }
+    }
+
+    /**
+     * Add the enrichment details for a single asset to a row.
+     *
+     * @param row (empty) buffer into which to add the details
+     * @param result the asset for which to build the row
+     */
+    void addAssetRow(RowBuffer row, Asset result) {
+        String guid = result.getGuid();
+        List<Asset> childAssets = getChildAssets(result);
+        long descriptionCounts = 0;
+        for (Asset child : childAssets) {
+            String childDesc = getDescription(child);
+            descriptionCounts += !childDesc.isEmpty() ? 1 : 0;
+        }
+        row.add(result.getConnectorType());
+        row.add(result.getQualifiedName());
+        row.add(result.getTypeName());
+        row.add(result.getName());
+        row.add(result.getDescription());
+        row.add(result.getUserDescription());
+        row.add(getUserOwners(result));
+        row.add(getGroupOwners(result));
+        row.add(result.getCertificateStatus());
+        row.add(result.getCertificateStatusMessage());
+        row.add(result.getCertificateUpdatedBy());
+        row.add(getFormattedDateTime(result.getCertificateUpdatedAt()));
+        row.add(result.getAnnouncementType());
+        row.add(result.getAnnouncementTitle());
+        row.add(result.getAnnouncementMessage());
+        row.add(result.getAnnouncementUpdatedBy());
+        row.add(getFormattedDateTime(result.getAnnouncementUpdatedAt()));
+        row.add(result.getCreatedBy());
+        row.add(getFormattedDateTime(result.getCreateTime()));
+        row.add(result.getUpdatedBy());
+        row.add(getFormattedDateTime(result.getUpdateTime()));
+        row.add(getREADME(result));
+        row.add(getTerms(result.getAssignedTerms()));
+        row.add(getCount(result.getLinks()));
+        row.add(DIRECT_ATLAN_TAG_ONLY ? getDirectAtlanTags(result) : getAtlanTags(result));
+        row.add(childAssets.size());
+        row.add(descriptionCounts);
+        row.add(getAssetLink(guid));
+        addCustomMetadata(row, result);
     }
 
     void getGlossaries(ExcelWriter xlsx, Sheet sheet) throws AtlanException {
-        for (Glossary glossary : glossaryGuidToDetails.values()) {
-            List<DataCell> row = new ArrayList<>();
-            row.add(DataCell.of(glossary.getName()));
-            row.add(DataCell.of(glossary.getDescription()));
-            row.add(DataCell.of(glossary.getUserDescription()));
-            row.add(DataCell.of(getUserOwners(glossary)));
-            row.add(DataCell.of(getGroupOwners(glossary)));
-            row.add(DataCell.of(glossary.getCertificateStatus()));
-            row.add(DataCell.of(glossary.getCertificateStatusMessage()));
-            row.add(DataCell.of(glossary.getCertificateUpdatedBy()));
-            row.add(DataCell.of(getFormattedDateTime(glossary.getCertificateUpdatedAt())));
-            row.add(DataCell.of(glossary.getAnnouncementType()));
-            row.add(DataCell.of(glossary.getAnnouncementTitle()));
-            row.add(DataCell.of(glossary.getAnnouncementMessage()));
-            row.add(DataCell.of(glossary.getAnnouncementUpdatedBy()));
-            row.add(DataCell.of(getFormattedDateTime(glossary.getAnnouncementUpdatedAt())));
-            row.add(DataCell.of(glossary.getCreatedBy()));
-            row.add(DataCell.of(getFormattedDateTime(glossary.getCreateTime())));
-            row.add(DataCell.of(glossary.getUpdatedBy()));
-            row.add(DataCell.of(getFormattedDateTime(glossary.getUpdateTime())));
-            row.add(DataCell.of(getREADME(glossary)));
-            row.add(DataCell.of(getCount(glossary.getLinks())));
-            row.add(DataCell.of(getAssetLink(glossary.getGuid())));
+        FluentSearch.FluentSearchBuilder<?, ?> builder = Glossary.select()
+                .pageSize(getBatchSize())
+                .sort(Asset.NAME.order(SortOrder.Asc))
+                .sort(Asset.GUID.order(SortOrder.Asc))
+                .includesOnResults(ENRICHMENT_ATTRIBUTES)
+                ._includesOnResults(CM_ATTRIBUTES_FOR_SEARCH)
+                .includesOnRelations(RELATION_ATTRIBUTES);
+        log.info(
+                "Retrieving {} glossaries from {} in batches of: {}",
+                glossaryGuidToName.size(),
+                Atlan.getBaseUrl(),
+                getBatchSize());
+        // Fetch the results in order, leaving the building and appending of the rows to the workbook (in that order)
+        Stream<Glossary> results = builder.stream().filter(a -> a instanceof Glossary).map(a -> (Glossary) a);
+        xlsx.appendRows(sheet, results, (glossary, row) -> {
+            row.add(glossary.getName());
+            row.add(glossary.getDescription());
+            row.add(glossary.getUserDescription());
+            row.add(getUserOwners(glossary));
+            row.add(getGroupOwners(glossary));
+            row.add(glossary.getCertificateStatus());
+            row.add(glossary.getCertificateStatusMessage());
+            row.add(glossary.getCertificateUpdatedBy());
+            row.add(getFormattedDateTime(glossary.getCertificateUpdatedAt()));
+            row.add(glossary.getAnnouncementType());
+            row.add(glossary.getAnnouncementTitle());
+            row.add(glossary.getAnnouncementMessage());
+            row.add(glossary.getAnnouncementUpdatedBy());
+            row.add(getFormattedDateTime(glossary.getAnnouncementUpdatedAt()));
+            row.add(glossary.getCreatedBy());
+            row.add(getFormattedDateTime(glossary.getCreateTime()));
+            row.add(glossary.getUpdatedBy());
+            row.add(getFormattedDateTime(glossary.getUpdateTime()));
+            row.add(getREADME(glossary));
+            row.add(getCount(glossary.getLinks()));
+            row.add(getAssetLink(glossary.getGuid()));
             addCustomMetadata(row, glossary);
-            xlsx.appendRow(sheet, row);
-        }
+        });
     }
 
-    void findCategories(ExcelWriter xlsx, Sheet sheet) throws AtlanException {
+    void findCategories(ExcelWriter xlsx, Sheet sheet, CountDownLatch pathsResolved) throws AtlanException {
         Map<String, GlossaryCategory> categoryGuidToDetails = new ConcurrentHashMap<>();
         FluentSearch.FluentSearchBuilder<?, ?> builder = GlossaryCategory.select()
                 .pageSize(getBatchSize())
@@ -456,86 +611,100 @@ public class EnrichmentReporter extends AbstractReporter implements RequestHandl
             }
             categoryGuidToDetails.put(c.getGuid(), (GlossaryCategory) c);
         });
-        for (GlossaryCategory category : categoryGuidToDetails.values()) {
-            String categoryPath = getCategoryPath(category, categoryGuidToDetails);
-            categoryGuidToPath.put(category.getGuid(), categoryPath);
-            Glossary glossary = glossaryGuidToDetails.get(category.getAnchor().getGuid());
-            List<DataCell> row = new ArrayList<>();
-            row.add(DataCell.of(glossary == null ? "" : glossary.getName()));
-            row.add(DataCell.of(categoryPath));
-            row.add(DataCell.of(category.getDescription()));
-            row.add(DataCell.of(category.getUserDescription()));
-            row.add(DataCell.of(getUserOwners(category)));
-            row.add(DataCell.of(getGroupOwners(category)));
-            row.add(DataCell.of(category.getCertificateStatus()));
-            row.add(DataCell.of(category.getCertificateStatusMessage()));
-            row.add(DataCell.of(category.getCertificateUpdatedBy()));
-            row.add(DataCell.of(getFormattedDateTime(category.getCertificateUpdatedAt())));
-            row.add(DataCell.of(category.getAnnouncementType()));
-            row.add(DataCell.of(category.getAnnouncementTitle()));
-            row.add(DataCell.of(category.getAnnouncementMessage()));
-            row.add(DataCell.of(category.getAnnouncementUpdatedBy()));
-            row.add(DataCell.of(getFormattedDateTime(category.getAnnouncementUpdatedAt())));
-            row.add(DataCell.of(category.getCreatedBy()));
-            row.add(DataCell.of(getFormattedDateTime(category.getCreateTime())));
-            row.add(DataCell.of(category.getUpdatedBy()));
-            row.add(DataCell.of(getFormattedDateTime(category.getUpdateTime())));
-            row.add(DataCell.of(getREADME(category)));
-            row.add(DataCell.of(getCount(category.getLinks())));
-            row.add(DataCell.of(getAssetLink(category.getGuid())));
+        categoryGuidToPath.putAll(new GlossaryHierarchyIndex(categoryGuidToDetails.values()).getPaths());
+        // Anything waiting on the category paths can now proceed
+        pathsResolved.countDown();
+        xlsx.appendRows(sheet, categoryGuidToDetails.values().stream(), (category, row) -> {
+            String categoryPath = categoryGuidToPath.get(category.getGuid());
+            row.add(glossaryGuidToName.getOrDefault(category.getAnchor().getGuid(), ""));
+            row.add(categoryPath);
+            row.add(category.getDescription());
+            row.add(category.getUserDescription());
+            row.add(getUserOwners(category));
+            row.add(getGroupOwners(category));
+            row.add(category.getCertificateStatus());
+            row.add(category.getCertificateStatusMessage());
+            row.add(category.getCertificateUpdatedBy());
+            row.add(getFormattedDateTime(category.getCertificateUpdatedAt()));
+            row.add(category.getAnnouncementType());
+            row.add(category.getAnnouncementTitle());
+            row.add(category.getAnnouncementMessage());
+            row.add(category.getAnnouncementUpdatedBy());
+            row.add(getFormattedDateTime(category.getAnnouncementUpdatedAt()));
+            row.add(category.getCreatedBy());
+            row.add(getFormattedDateTime(category.getCreateTime()));
+            row.add(category.getUpdatedBy());
+            row.add(getFormattedDateTime(category.getUpdateTime()));
+            row.add(getREADME(category));
+            row.add(getCount(category.getLinks()));
+            row.add(getAssetLink(category.getGuid()));
             addCustomMetadata(row, category);
-            xlsx.appendRow(sheet, row);
-        }
-    }
-
-    static String getCategoryPath(GlossaryCategory category, Map<String, GlossaryCategory> guidMap) {
-        IGlossaryCategory parent = category.getParentCategory();
-        if (parent == null || parent.getGuid() == null) {
-            return category.getName();
-        } else {
-            // Retrieve the full parent object from the map before recursing
-            return getCategoryPath(guidMap.get(parent.getGuid()), guidMap) + "@" + category.getName();
-        }
+        });
     }
 
     void getTerms(ExcelWriter xlsx, Sheet sheet) throws AtlanException {
-        for (GlossaryTerm term : termGuidToDetails.values()) {
-            Glossary glossary = glossaryGuidToDetails.get(term.getAnchor().getGuid());
-            List<DataCell> row = new ArrayList<>();
-            row.add(DataCell.of(glossary == null ? "" : glossary.getName()));
-            row.add(DataCell.of(term.getName()));
-            row.add(DataCell.of(term.getDescription()));
-            row.add(DataCell.of(term.getUserDescription()));
-            row.add(DataCell.of(getCategories(term)));
-            row.add(DataCell.of(getUserOwners(term)));
-            row.add(DataCell.of(getGroupOwners(term)));
-            row.add(DataCell.of(term.getCertificateStatus()));
-            row.add(DataCell.of(DIRECT_ATLAN_TAG_ONLY ? getDirectAtlanTags(term) : getAtlanTags(term)));
-            row.add(DataCell.of(term.getCertificateStatusMessage()));
-            row.add(DataCell.of(term.getCertificateUpdatedBy()));
-            row.add(DataCell.of(getFormattedDateTime(term.getCertificateUpdatedAt())));
-            row.add(DataCell.of(term.getAnnouncementType()));
-            row.add(DataCell.of(term.getAnnouncementTitle()));
-            row.add(DataCell.of(term.getAnnouncementMessage()));
-            row.add(DataCell.of(term.getAnnouncementUpdatedBy()));
-            row.add(DataCell.of(getFormattedDateTime(term.getAnnouncementUpdatedAt())));
-            row.add(DataCell.of(term.getCreatedBy()));
-            row.add(DataCell.of(getFormattedDateTime(term.getCreateTime())));
-            row.add(DataCell.of(term.getUpdatedBy()));
-            row.add(DataCell.of(getFormattedDateTime(term.getUpdateTime())));
-            row.add(DataCell.of(getREADME(term)));
-            row.add(DataCell.of(getTerms(term.getSeeAlso(), termGuidToDetails)));
-            row.add(DataCell.of(getTerms(term.getPreferredTerms(), termGuidToDetails)));
-            row.add(DataCell.of(getTerms(term.getSynonyms(), termGuidToDetails)));
-            row.add(DataCell.of(getTerms(term.getAntonyms(), termGuidToDetails)));
-            row.add(DataCell.of(getTerms(term.getTranslatedTerms(), termGuidToDetails)));
-            row.add(DataCell.of(getTerms(term.getValidValuesFor(), termGuidToDetails)));
-            row.add(DataCell.of(getTerms(term.getClassifies(), termGuidToDetails)));
-            row.add(DataCell.of(getCount(term.getLinks())));
-            row.add(DataCell.of(getAssetLink(term.getGuid())));
+        FluentSearch.FluentSearchBuilder<?, ?> builder = GlossaryTerm.select()
+                .pageSize(getBatchSize())
+                .sort(Asset.NAME.order(SortOrder.Asc))
+                .sort(Asset.GUID.order(SortOrder.Asc))
+                .includesOnResults(ENRICHMENT_ATTRIBUTES)
+                ._includesOnResults(CM_ATTRIBUTES_FOR_SEARCH)
+                .includeOnResults(GlossaryTerm.ANCHOR)
+                .includeOnResults(GlossaryTerm.CATEGORIES)
+                .includeOnResults(GlossaryTerm.SEE_ALSO)
+                .includeOnResults(GlossaryTerm.PREFERRED_TERMS)
+                .includeOnResults(GlossaryTerm.SYNONYMS)
+                .includeOnResults(GlossaryTerm.ANTONYMS)
+                .includeOnResults(GlossaryTerm.TRANSLATED_TERMS)
+                .includeOnResults(GlossaryTerm.VALID_VALUES_FOR)
+                .includeOnResults(GlossaryTerm.CLASSIFIES)
+                .includesOnRelations(RELATION_ATTRIBUTES);
+        final long totalResults = termGuidToReference.size();
+        AtomicLong count = new AtomicLong(0);
+        log.info("Retrieving {} terms from {} in batches of: {}", totalResults, Atlan.getBaseUrl(), getBatchSize());
+        // Fetch the results in order, leaving the building and appending of the rows to the workbook (in that order)
+        Stream<GlossaryTerm> results =
+                builder.stream().filter(a -> a instanceof GlossaryTerm).map(a -> (GlossaryTerm) a);
+        xlsx.appendRows(sheet, results, (term, row) -> {
+            long localCount = count.getAndIncrement();
+            if (localCount % getBatchSize() == 0) {
+                log.info(
+                        " ... processed {}/{} ({}%)",
+                        localCount, totalResults, Math.round(((double) localCount / totalResults) * 100));
+            }
+            row.add(getGlossaryName(term));
+            row.add(term.getName());
+            row.add(term.getDescription());
+            row.add(term.getUserDescription());
+            row.add(getCategories(term));
+            row.add(getUserOwners(term));
+            row.add(getGroupOwners(term));
+            row.add(term.getCertificateStatus());
+            row.add(DIRECT_ATLAN_TAG_ONLY ? getDirectAtlanTags(term) : getAtlanTags(term));
+            row.add(term.getCertificateStatusMessage());
+            row.add(term.getCertificateUpdatedBy());
+            row.add(getFormattedDateTime(term.getCertificateUpdatedAt()));
+            row.add(term.getAnnouncementType());
+            row.add(term.getAnnouncementTitle());
+            row.add(term.getAnnouncementMessage());
+            row.add(term.getAnnouncementUpdatedBy());
+            row.add(getFormattedDateTime(term.getAnnouncementUpdatedAt()));
+            row.add(term.getCreatedBy());
+            row.add(getFormattedDateTime(term.getCreateTime()));
+            row.add(term.getUpdatedBy());
+            row.add(getFormattedDateTime(term.getUpdateTime()));
+            row.add(getREADME(term));
+            row.add(getTerms(term.getSeeAlso()));
+            row.add(getTerms(term.getPreferredTerms()));
+            row.add(getTerms(term.getSynonyms()));
+            row.add(getTerms(term.getAntonyms()));
+            row.add(getTerms(term.getTranslatedTerms()));
+            row.add(getTerms(term.getValidValuesFor()));
+            row.add(getTerms(term.getClassifies()));
+            row.add(getCount(term.getLinks()));
+            row.add(getAssetLink(term.getGuid()));
             addCustomMetadata(row, term);
-            xlsx.appendRow(sheet, row);
-        }
+        });
     }
 
     String getCategories(GlossaryTerm term) {
@@ -550,21 +719,26 @@ public class EnrichmentReporter extends AbstractReporter implements RequestHandl
         return getDelimitedList(categoryPaths);
     }
 
-    String getTerms(Set<IGlossaryTerm> terms, Map<String, GlossaryTerm> guidMap) {
+    String getTerms(Set<IGlossaryTerm> terms) {
         List<String> qualifiedTerms = new ArrayList<>(terms.size());
         for (IGlossaryTerm term : terms) {
-            GlossaryTerm related = guidMap.getOrDefault(term.getGuid(), null);
-            if (related != null) {
-                Glossary glossary =
-                        glossaryGuidToDetails.get(related.getAnchor().getGuid());
-                qualifiedTerms.add(related.getName() + "@" + (glossary == null ? "" : glossary.getName()));
+            String reference = termGuidToReference.get(term.getGuid());
+            if (reference != null) {
+                qualifiedTerms.add(reference);
             }
         }
         return getDelimitedList(qualifiedTerms);
     }
 
+    static String getGlossaryName(GlossaryTerm term) {
+        if (term.getAnchor() == null) {
+            return "";
+        }
+        return glossaryGuidToName.getOrDefault(term.getAnchor().getGuid(), "");
+    }
+
     @SuppressWarnings("unchecked")
-    private void addCustomMetadata(List<DataCell> row, Asset result) {
+    private void addCustomMetadata(RowBuffer row, Asset result) {
         Map<String, CustomMetadataAttributes> map = result.getCustomMetadataSets();
         if (map != null) {
             for (Map.Entry<String, List<String>> entry : CM_ATTRIBUTE_ORDER.entrySet()) {
@@ -576,23 +750,23 @@ public class EnrichmentReporter extends AbstractReporter implements RequestHandl
                     for (String attrName : attrOrder) {
                         Object value = active.get(attrName);
                         if (value == null) {
-                            row.add(DataCell.of(""));
+                            row.add("");
                         } else if (value instanceof Collection) {
-                            row.add(DataCell.of(getDelimitedList((Collection<String>) value)));
+                            row.add(getDelimitedList((Collection<String>) value));
                         } else if (value instanceof Boolean) {
-                            row.add(DataCell.of((Boolean) value));
+                            row.add((Boolean) value);
                         } else if (value instanceof Long) {
-                            row.add(DataCell.of((Long) value));
+                            row.add((Long) value);
                         } else if (value instanceof Double) {
-                            row.add(DataCell.of((Double) value));
+                            row.add((Double) value);
                         } else {
-                            row.add(DataCell.of(value.toString()));
+                            row.add(value.toString());
                         }
                     }
                 } else {
                     // Fill in the blanks so that we retain positioning
                     for (int i = 0; i < attrOrder.size(); i++) {
-                        row.add(DataCell.of(""));
+                        row.add("");
                     }
                 }
             }
@@ -5,6 +5,8 @@ package com.atlan.samples.reporters;
 import static com.atlan.samples.writers.ExcelWriter.DataCell;
 
 import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.WildcardQuery;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.atlan.Atlan;
@@ -12,21 +14,26 @@ import com.atlan.exception.AtlanException;
 import com.atlan.model.assets.*;
 import com.atlan.model.search.FluentSearch;
 import com.atlan.samples.writers.ExcelWriter;
+import com.atlan.samples.writers.S3MultipartOutputStream;
 import com.atlan.samples.writers.S3Writer;
 import java.io.IOException;
+import java.net.URI;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.Sheet;
-import software.amazon.awssdk.services.s3.S3Client;
 
 @Slf4j
 public class SlackDiscussionReporter extends AbstractReporter implements RequestHandler<Map<String, String>, String> {
 
     private static final Map<String, String> SLACK_DISCUSSIONS = createSlackDiscussionHeader();
 
-    private static final Map<String, Long> assetToSlackDiscussions = new ConcurrentHashMap<>();
+    private static final String SLACK_DOMAIN = "slack.com";
+    private static final String SLACK_LINK_PATTERN = "*" + SLACK_DOMAIN + "*";
+
+    private static final Map<String, LongAdder> assetToSlackDiscussions = new ConcurrentHashMap<>();
     private static final Map<String, IAsset> guidToLinkedAsset = new ConcurrentHashMap<>();
 
     public static void main(String[] args) {
@@ -60,7 +67,7 @@ public class SlackDiscussionReporter extends AbstractReporter implements Request
 
             parseParametersFromEvent(event);
 
-            ExcelWriter xlsx = new ExcelWriter(getBatchSize());
+            ExcelWriter xlsx = new ExcelWriter(getBatchSize(), getMaxRowsPerSheet());
 
             Sheet assets = xlsx.createSheet("Slack discussions");
             xlsx.addHeader(assets, SLACK_DISCUSSIONS);
@@ -68,9 +75,13 @@ public class SlackDiscussionReporter extends AbstractReporter implements Request
 
             // If a bucket was provided, we'll write out to S3
             if (getBucket() != null) {
-                S3Client s3Client = S3Client.builder().region(getRegion()).build();
-                S3Writer s3 = new S3Writer(s3Client);
-                s3.putExcelFile(xlsx.asByteArray(), getBucket(), getFilename());
+                S3Writer s3 = new S3Writer(getS3Client());
+                try (S3MultipartOutputStream out =
+                        s3.openStream(getBucket(), getFilename(), S3Writer.EXCEL_CONTENT_TYPE)) {
+                    xlsx.writeTo(out);
+                    // Only publish the report once it has been written in full
+                    out.complete();
+                }
             } else {
                 // Otherwise we'll write out to a file (locally)
                 log.info("Writing report to file: {}", getFilename());
@@ -89,22 +100,22 @@ public class SlackDiscussionReporter extends AbstractReporter implements Request
     }
 
     void getSlackDiscussions(ExcelWriter xlsx, Sheet sheet) throws AtlanException {
-        // TODO: Ideally filter the links retrieved to only those for slack.com, but this does not
-        //  appear possible with the index on the 'link' attribute
-        FluentSearch.FluentSearchBuilder<?, ?> builder = Link.select()
-                .pageSize(getBatchSize())
-                .sort(Asset.GUID.order(SortOrder.Asc))
-                .includeOnResults(Link.ASSET)
-                .includeOnResults(Link.LINK)
-                .includeOnResults(Link.REFERENCE)
-                .includeOnRelations(Asset.QUALIFIED_NAME)
-                .includeOnRelations(Asset.TYPE_NAME)
-                .includeOnRelations(Asset.NAME);
-        final long totalResults = builder.count();
+        FluentSearch.FluentSearchBuilder<?, ?> builder;
+        if (supportsLinkWildcard()) {
+            // Push the filter for slack.com links down into the search, so that only those links are retrieved
+            // (and trust it, even if it finds none)
+            builder = getLinks().where(linkMatches(SLACK_LINK_PATTERN));
+        } else {
+            // The link attribute is not indexed in a way that supports the wildcard, so fallback
+            // to investigating every link
+            log.warn("Unable to filter links to those for Slack in the search — investigating every link instead.");
+            builder = getLinks();
+        }
+        final long total = builder.count();
         AtomicLong count = new AtomicLong(0);
         log.info(
                 "Investigating {} linked resources in {} in batches of: {}",
-                totalResults,
+                total,
                 Atlan.getBaseUrl(),
                 getBatchSize());
         builder.stream(true).filter(a -> a instanceof Link).forEach(l -> {
@@ -112,24 +123,24 @@ public class SlackDiscussionReporter extends AbstractReporter implements Request
             if (localCount % getBatchSize() == 0) {
                 log.info(
                         " ... processed {}/{} ({}%)",
-                        localCount, totalResults, Math.round(((double) localCount / totalResults) * 100));
+                        localCount, total, Math.round(((double) localCount / total) * 100));
             }
             Link link = (Link) l;
             if (link.getAsset() != null) {
                 String assetGuid = link.getAsset().getGuid();
                 String url = link.getLink();
-                if (url.contains("slack.com")) {
-                    if (!assetToSlackDiscussions.containsKey(assetGuid)) {
-                        assetToSlackDiscussions.put(assetGuid, 0L);
-                    }
-                    assetToSlackDiscussions.put(assetGuid, assetToSlackDiscussions.get(assetGuid) + 1);
-                    guidToLinkedAsset.put(assetGuid, link.getAsset());
+                if (url != null && url.contains(SLACK_DOMAIN)) {
+                    // Note: count through an adder, so that no increments are lost across threads
+                    assetToSlackDiscussions
+                            .computeIfAbsent(assetGuid, k -> new LongAdder())
+                            .increment();
+                    guidToLinkedAsset.putIfAbsent(assetGuid, link.getAsset());
                 }
             }
         });
-        for (Map.Entry<String, Long> entry : assetToSlackDiscussions.entrySet()) {
+        for (Map.Entry<String, LongAdder> entry : assetToSlackDiscussions.entrySet()) {
             String assetGuid = entry.getKey();
-            Long linkCount = entry.getValue();
+            long linkCount = entry.getValue().sum();
             IAsset asset = guidToLinkedAsset.get(assetGuid);
             if (asset != null) {
                 xlsx.appendRow(
@@ -144,6 +155,55 @@ public class SlackDiscussionReporter extends AbstractReporter implements Request
         }
     }
 
+    /**
+     * Check whether links can be filtered by a wildcard on their URL in the search (which depends on how the
+     * link attribute is indexed): some link must be found again through a wildcard of the same shape as the one
+     * used to find Slack links (on its own host).
+     *
+     * @return true if a wildcard on the URL of links can be trusted (including when there are no links at all)
+     * @throws AtlanException on any problems running the searches
+     */
+    private boolean supportsLinkWildcard() throws AtlanException {
+        Optional<String> sample = getLinks()
+                .pageSize(1)
+                .stream()
+                .filter(a -> a instanceof Link)
+                .map(a -> ((Link) a).getLink())
+                .filter(url -> url != null && !url.isEmpty())
+                .findFirst();
+        if (sample.isEmpty()) {
+            // Without any links (with a URL), there is nothing to find either way
+            return true;
+        }
+        String host;
+        try {
+            host = URI.create(sample.get()).getHost();
+        } catch (IllegalArgumentException e) {
+            host = null;
+        }
+        if (host == null || host.contains("*") || host.contains("?")) {
+            log.debug("Unable to determine a host from link {} to check the wildcard.", sample.get());
+            return false;
+        }
+        return getLinks().where(linkMatches("*" + host + "*")).count() > 0;
+    }
+
+    private static Query linkMatches(String pattern) {
+        return WildcardQuery.of(w -> w.field(Link.LINK.getElasticFieldName()).value(pattern))._toQuery();
+    }
+
+    private FluentSearch.FluentSearchBuilder<?, ?> getLinks() {
+        return Link.select()
+                .pageSize(getBatchSize())
+                .sort(Asset.GUID.order(SortOrder.Asc))
+                .includeOnResults(Link.ASSET)
+                .includeOnResults(Link.LINK)
+                .includeOnResults(Link.REFERENCE)
+                .includeOnRelations(Asset.QUALIFIED_NAME)
+                .includeOnRelations(Asset.TYPE_NAME)
+                .includeOnRelations(Asset.NAME);
+    }
+
     static Map<String, String> createSlackDiscussionHeader() {
         Map<String, String> map = new LinkedHashMap<>();
         map.put("Qualified name", "Unique name of the asset");
@@ -9,7 +9,10 @@ import com.atlan.exception.AtlanException;
 import com.atlan.model.admin.AtlanGroup;
 import com.atlan.model.admin.AtlanUser;
 import com.atlan.model.admin.GroupResponse;
+import com.atlan.model.admin.UserRequest;
+import com.atlan.model.admin.UserResponse;
 import com.atlan.samples.writers.ExcelWriter;
+import com.atlan.samples.writers.S3MultipartOutputStream;
 import com.atlan.samples.writers.S3Writer;
 import java.io.IOException;
 import java.time.Instant;
@@ -17,16 +20,26 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.Sheet;
-import software.amazon.awssdk.services.s3.S3Client;
 
 @Slf4j
 public class UserReporter extends AbstractReporter implements RequestHandler<Map<String, String>, String> {
 
     private static final Map<String, String> USER_REPORT_HEADERS = createUserDetailsReportHeaders();
 
+    /** Maximum number of requests to make to Atlan at the same time. */
+    private static final int MAX_CONCURRENT_REQUESTS = 8;
+
+    /** Number of members of a group to retrieve per request. */
+    private static final int MEMBERS_PAGE_SIZE = 100;
+
     private static final Comparator<String> stringComparator = Comparator.nullsFirst(String::compareTo);
 
     public static void main(String[] args) {
@@ -67,7 +80,7 @@ public class UserReporter extends AbstractReporter implements RequestHandler<Map
             }
 
             // Adding content in the Excel report
-            ExcelWriter xlsx = new ExcelWriter(getBatchSize());
+            ExcelWriter xlsx = new ExcelWriter(getBatchSize(), getMaxRowsPerSheet());
             Sheet userinfo = xlsx.createSheet("User Details");
             xlsx.addHeader(userinfo, USER_REPORT_HEADERS);
             addUserDetailRecords(xlsx, userinfo, users);
@@ -75,9 +88,13 @@ public class UserReporter extends AbstractReporter implements RequestHandler<Map
             // If a bucket was provided, we'll write out to S3
             if (getBucket() != null) {
                 log.info("Putting file: {} into S3", getFilename());
-                S3Client s3Client = S3Client.builder().region(getRegion()).build();
-                S3Writer s3 = new S3Writer(s3Client);
-                s3.putExcelFile(xlsx.asByteArray(), getBucket(), getFilename());
+                S3Writer s3 = new S3Writer(getS3Client());
+                try (S3MultipartOutputStream out =
+                        s3.openStream(getBucket(), getFilename(), S3Writer.EXCEL_CONTENT_TYPE)) {
+                    xlsx.writeTo(out);
+                    // Only publish the report once it has been written in full
+                    out.complete();
+                }
             } else {
                 // Otherwise we'll write out to a file (locally)
                 log.info("Writing report to file: {}", getFilename());
@@ -115,71 +132,206 @@ public class UserReporter extends AbstractReporter implements RequestHandler<Map
 
     void addUserDetailRecords(ExcelWriter xlsx, Sheet sheet, List<AtlanUser> users) throws AtlanException {
 
-        // iterate on user list and write rows in the report
+        // Rather than fetching the groups of every user, one by one, invert the membership of every group
+        // (unless the members of some group cannot all be listed, in which case fetch the groups of each user)
+        Map<String, List<String>> groupsByUser = getGroupsByUser();
+
+        // Build each user's row into the same (reused) buffer, in the order of the users
+        ExcelWriter.RowBuffer row = new ExcelWriter.RowBuffer(USER_REPORT_HEADERS.size());
         for (AtlanUser user : users) {
             if (user != null) {
+                addUserDetailRecord(row.clear(), user, groupsByUser);
+                xlsx.appendRow(sheet, row);
+            }
+        }
+    }
 
-                // convert user's last login timestamp to local timezone
-                Long userLastLoginTime = user.getLastLoginTime();
-                String reportLastLoginTime = "";
-                if (userLastLoginTime != null && userLastLoginTime > 0) {
-                    LocalDateTime ldt =
-                            LocalDateTime.ofInstant(Instant.ofEpochMilli(userLastLoginTime), ZoneOffset.UTC);
-                    reportLastLoginTime = ldt.format(DateTimeFormatter.ISO_DATE_TIME);
+    /**
+     * Retrieve the names of the groups each user is a member of, by listing the members of every group (once).
+     *
+     * @return a mapping from user ID to the names of the groups the user is a member of, or null if the members
+     *     of any group could not all be listed (so the groups of each user must be retrieved for that user)
+     * @throws AtlanException on any problems listing the groups
+     */
+    private Map<String, List<String>> getGroupsByUser() throws AtlanException {
+        List<AtlanGroup> groups = AtlanGroup.list();
+        log.info("Retrieving the members of {} groups...", groups.size());
+        Map<String, List<String>> groupsByUser = new ConcurrentHashMap<>();
+        List<String> incomplete = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS);
+        try {
+            List<Future<Boolean>> inverted = new ArrayList<>(groups.size());
+            for (AtlanGroup group : groups) {
+                inverted.add(executor.submit(() -> addMembersOf(group, groupsByUser)));
+            }
+            for (int i = 0; i < groups.size(); i++) {
+                if (!inverted.get(i).get()) {
+                    incomplete.add(groups.get(i).getAlias());
                 }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unable to retrieve group members.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for group members.", e);
+        } finally {
+            executor.shutdown();
+        }
+        if (!incomplete.isEmpty()) {
+            // Any user could be a member of these groups, so no user's groups can be trusted from the members
+            log.warn(
+                    "Unable to list all the members of groups {} — retrieving the groups of each user instead.",
+                    incomplete);
+            return null;
+        }
+        return groupsByUser;
+    }
 
-                // format user roles
-                List<String> roles = user.getRoles();
-                roles.remove("default-roles-default");
-                String reportRoles = String.join("|", roles).replace("$", "");
-
-                // gather details of user groups
-                List<String> groupNames = Collections.emptyList();
-                try {
-                    GroupResponse groupResponse = user.fetchGroups();
-                    if (groupResponse != null) {
-                        List<AtlanGroup> groupList = groupResponse.getRecords();
-                        if (groupList != null) {
-                            groupNames =
-                                    groupList.stream().map(AtlanGroup::getAlias).collect(Collectors.toList());
-                        }
-                    }
-                } catch (AtlanException e) {
-                    log.warn("Failed to retrieve group information for user {}.", user.getUsername(), e);
+    /**
+     * Add the group to the groups of each of its members, paging through its members until all of them
+     * have been retrieved. If the members of the group cannot all be retrieved, the listing is retried once.
+     *
+     * @param group whose members to retrieve
+     * @param groupsByUser mapping from user ID to the names of the groups the user is a member of
+     * @return true if all the members of the group were retrieved, otherwise false (and none of them are added)
+     */
+    private boolean addMembersOf(AtlanGroup group, Map<String, List<String>> groupsByUser) {
+        Set<String> members = null;
+        for (int attempt = 1; attempt <= 2; attempt++) {
+            try {
+                Set<String> listed = getMemberIds(group);
+                if (group.getUserCount() == null || listed.size() >= group.getUserCount()) {
+                    members = listed;
+                    break;
                 }
-                String reportGroupNames = String.join("|", groupNames);
-
-                // gather details of user personas
-                List<String> personaNames = Collections.emptyList();
-                try {
-                    SortedSet<AtlanUser.Persona> userPersonas = user.getPersonas();
-                    if (userPersonas != null) {
-                        personaNames = userPersonas.stream()
-                                .map(AtlanUser.Persona::getDisplayName)
-                                .collect(Collectors.toList());
-                    }
-                } catch (Exception e) {
-                    log.warn("Failed to retrieve persona details for user {}.", user.getUsername(), e);
+                log.warn(
+                        "Only retrieved {} of {} members of group {} (attempt {}).",
+                        listed.size(),
+                        group.getUserCount(),
+                        group.getAlias(),
+                        attempt);
+            } catch (AtlanException e) {
+                log.warn("Unable to retrieve the members of group {} (attempt {}).", group.getAlias(), attempt, e);
+            }
+        }
+        if (members == null) {
+            return false;
+        }
+        for (String member : members) {
+            groupsByUser
+                    .computeIfAbsent(member, k -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(group.getAlias());
+        }
+        return true;
+    }
+
+    /**
+     * Retrieve the IDs of all the members of a group, a page at a time.
+     *
+     * @param group whose members to retrieve
+     * @return the IDs of the members of the group
+     * @throws AtlanException on any problems retrieving a page of members
+     */
+    private static Set<String> getMemberIds(AtlanGroup group) throws AtlanException {
+        Set<String> members = new LinkedHashSet<>();
+        int offset = 0;
+        while (true) {
+            UserRequest request = UserRequest.builder().offset(offset).limit(MEMBERS_PAGE_SIZE).build();
+            UserResponse response = Atlan.getDefaultClient().groups.getMembers(group.getId(), request);
+            List<AtlanUser> page = response == null ? null : response.getRecords();
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+            for (AtlanUser member : page) {
+                members.add(member.getId());
+            }
+            offset += page.size();
+            if (page.size() < MEMBERS_PAGE_SIZE
+                    || (group.getUserCount() != null && members.size() >= group.getUserCount())) {
+                break;
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Retrieve the names of the groups a single user is a member of, directly for that user.
+     *
+     * @param user whose groups to retrieve
+     * @return the names of the groups the user is a member of, or null if they could not be retrieved
+     */
+    private static List<String> fetchGroupNames(AtlanUser user) {
+        try {
+            GroupResponse groupResponse = user.fetchGroups();
+            if (groupResponse != null) {
+                List<AtlanGroup> groupList = groupResponse.getRecords();
+                if (groupList != null) {
+                    return groupList.stream().map(AtlanGroup::getAlias).collect(Collectors.toList());
                 }
-                String reportPersonaNames = String.join("|", personaNames);
-
-                // write row
-                xlsx.appendRow(
-                        sheet,
-                        List.of(
-                                ExcelWriter.DataCell.of(user.getId()),
-                                ExcelWriter.DataCell.of(user.getUsername()),
-                                ExcelWriter.DataCell.of(user.getFirstName()),
-                                ExcelWriter.DataCell.of(user.getLastName()),
-                                ExcelWriter.DataCell.of(user.getEmail()),
-                                ExcelWriter.DataCell.of(user.getEmailVerified()),
-                                ExcelWriter.DataCell.of(user.getEnabled()),
-                                ExcelWriter.DataCell.of(reportRoles),
-                                ExcelWriter.DataCell.of(user.getLoginEvents().size()),
-                                ExcelWriter.DataCell.of(reportLastLoginTime),
-                                ExcelWriter.DataCell.of(reportGroupNames),
-                                ExcelWriter.DataCell.of(reportPersonaNames)));
             }
+        } catch (AtlanException e) {
+            log.warn("Failed to retrieve group information for user {}.", user.getUsername(), e);
         }
+        return null;
+    }
+
+    /**
+     * Add the details of a single user to a row.
+     *
+     * @param row (empty) buffer into which to add the details
+     * @param user for which to build the row
+     * @param groupsByUser names of the groups each user is a member of (or null to retrieve them for the user)
+     */
+    private void addUserDetailRecord(
+            ExcelWriter.RowBuffer row, AtlanUser user, Map<String, List<String>> groupsByUser) {
+
+        // convert user's last login timestamp to local timezone
+        Long userLastLoginTime = user.getLastLoginTime();
+        String reportLastLoginTime = "";
+        if (userLastLoginTime != null && userLastLoginTime > 0) {
+            LocalDateTime ldt = LocalDateTime.ofInstant(Instant.ofEpochMilli(userLastLoginTime), ZoneOffset.UTC);
+            reportLastLoginTime = ldt.format(DateTimeFormatter.ISO_DATE_TIME);
+        }
+
+        // format user roles
+        List<String> roles = user.getRoles();
+        roles.remove("default-roles-default");
+        String reportRoles = String.join("|", roles).replace("$", "");
+
+        // gather details of user groups
+        List<String> groupNames = Collections.emptyList();
+        List<String> memberOf = groupsByUser == null ? fetchGroupNames(user) : groupsByUser.get(user.getId());
+        if (memberOf != null) {
+            groupNames = new ArrayList<>(memberOf);
+            Collections.sort(groupNames);
+        }
+        String reportGroupNames = String.join("|", groupNames);
+
+        // gather details of user personas
+        List<String> personaNames = Collections.emptyList();
+        try {
+            SortedSet<AtlanUser.Persona> userPersonas = user.getPersonas();
+            if (userPersonas != null) {
+                personaNames = userPersonas.stream()
+                        .map(AtlanUser.Persona::getDisplayName)
+                        .collect(Collectors.toList());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to retrieve persona details for user {}.", user.getUsername(), e);
+        }
+        String reportPersonaNames = String.join("|", personaNames);
+
+        row.add(user.getId())
+                .add(user.getUsername())
+                .add(user.getFirstName())
+                .add(user.getLastName())
+                .add(user.getEmail())
+                .add(user.getEmailVerified())
+                .add(user.getEnabled())
+                .add(reportRoles)
+                .add(user.getLoginEvents().size())
+                .add(reportLastLoginTime)
+                .add(reportGroupNames)
+                .add(reportPersonaNames);
     }
 }
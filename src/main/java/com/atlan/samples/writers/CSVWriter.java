@@ -9,8 +9,19 @@ import de.siegmar.fastcsv.writer.CsvWriter;
 import de.siegmar.fastcsv.writer.LineDelimiter;
 import de.siegmar.fastcsv.writer.QuoteStrategy;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
@@ -18,11 +29,34 @@ import lombok.extern.slf4j.Slf4j;
 
 /**
  * Utility class for creating and writing to CSV files, using FastCSV.
+ * Rows can be written from many threads at once: each thread encodes its rows into its own buffer,
+ * and hands off large chunks of encoded bytes to a single writer thread (through a bounded queue)
+ * that does the actual writing — so no locks are taken per row.
  */
 @Slf4j
 public class CSVWriter implements Closeable {
 
-    private final CsvWriter writer;
+    /** Number of characters to buffer on each thread before handing them off to be written. */
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    /** Maximum number of chunks waiting to be written, before any further chunks must wait. */
+    private static final int QUEUE_CAPACITY = 32;
+
+    /** Marker to signal the writer thread that there are no more chunks to write. */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final char fieldSeparator;
+    private final WritableByteChannel channel;
+    private final S3MultipartOutputStream s3Object;
+    // Only when producing a file only once complete: the file to produce, and the temporary file written until then
+    private final Path target;
+    private final Path staging;
+    private final BlockingQueue<ByteBuffer> chunks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Map<Thread, Encoder> encoders = new ConcurrentHashMap<>();
+    private final Thread writerThread;
+    private volatile IOException failure = null;
+    private boolean finished = false;
+    private boolean completed = false;
 
     /**
      * Construct a new CSV file writer, using a comma (as the C in CSV implies)
@@ -43,12 +77,64 @@ public class CSVWriter implements Closeable {
      * @throws IOException on any errors creating or accessing the file
      */
     public CSVWriter(String path, char fieldSeparator) throws IOException {
-        writer = CsvWriter.builder()
-                .fieldSeparator(fieldSeparator)
-                .quoteCharacter('"')
-                .quoteStrategy(QuoteStrategy.REQUIRED)
-                .lineDelimiter(LineDelimiter.PLATFORM)
-                .build(new ThreadSafeWriter(path));
+        this(open(Paths.get(path)), null, null, null, fieldSeparator);
+    }
+
+    /**
+     * Construct a new CSV file writer, using a specific field separator character, that can only ever
+     * produce a complete file. The CSV is written into a temporary file alongside the file to produce,
+     * which only replaces that file if this writer is completed (see {@link #complete()}) — if the writer
+     * is closed without being completed, the temporary file is discarded (and any existing file is left as-is).
+     *
+     * @param path location and filename of the CSV file to produce
+     * @param fieldSeparator character to use to separate fields (for example ',' or ';')
+     * @param onlyIfComplete if true, only produce the file once this writer is completed
+     * @throws IOException on any errors creating or accessing the file
+     */
+    public CSVWriter(String path, char fieldSeparator, boolean onlyIfComplete) throws IOException {
+        this(Paths.get(path).toAbsolutePath(), onlyIfComplete ? stage(Paths.get(path)) : null, fieldSeparator);
+    }
+
+    private CSVWriter(Path target, Path staging, char fieldSeparator) throws IOException {
+        this(open(staging == null ? target : staging), null, target, staging, fieldSeparator);
+    }
+
+    /**
+     * Construct a new CSV writer that writes straight into an S3 object, using a specific field separator character.
+     * Note: the S3 object is only created if this writer is completed (see {@link #complete()}), and the
+     * output stream will be closed when this writer is closed.
+     *
+     * @param out output stream into the S3 object to which to write the CSV
+     * @param fieldSeparator character to use to separate fields (for example ',' or ';')
+     */
+    public CSVWriter(S3MultipartOutputStream out, char fieldSeparator) {
+        this(Channels.newChannel(out), out, null, null, fieldSeparator);
+    }
+
+    private CSVWriter(
+            WritableByteChannel channel,
+            S3MultipartOutputStream s3Object,
+            Path target,
+            Path staging,
+            char fieldSeparator) {
+        this.channel = channel;
+        this.s3Object = s3Object;
+        this.target = target;
+        this.staging = staging;
+        this.fieldSeparator = fieldSeparator;
+        this.writerThread = new Thread(this::writeChunks, "csv-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(
+                path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    private static Path stage(Path target) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        return Files.createTempFile(absolute.getParent(), absolute.getFileName() + ".", ".tmp");
     }
 
     /**
@@ -57,7 +143,22 @@ public class CSVWriter implements Closeable {
      * @param values to use for the header
      */
     public void writeHeader(Iterable<String> values) {
-        writer.writeRow(values);
+        // Hand off the header immediately, so that it is always written before any other rows
+        try (Encoder header = new Encoder()) {
+            header.writeRow(values);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write a single row into the CSV file. (Rows written from the same thread are written
+     * in the order in which they are provided.)
+     *
+     * @param values to use for the row
+     */
+    public void writeRow(Iterable<String> values) {
+        encoders.computeIfAbsent(Thread.currentThread(), t -> new Encoder()).writeRow(values);
     }
 
     /**
@@ -71,9 +172,27 @@ public class CSVWriter implements Closeable {
      */
     public void streamAssets(
             Stream<Asset> stream, RowGenerator valuesForRow, final long totalAssetCount, final int pageSize) {
+        streamAssets(stream, valuesForRow, totalAssetCount, pageSize, GuidSet.exact(totalAssetCount));
+    }
+
+    /**
+     * Parallel-write the provided asset stream into the CSV file.
+     * (For the highest performance, we recommend sending in a parallel stream of assets.)
+     *
+     * @param stream of assets, typically from a FluentSearch (parallel stream recommended)
+     * @param valuesForRow a function (could just be a lambda) that turns a single Asset into an iterable of String values
+     * @param totalAssetCount the total number of assets that will be output (used for logging / completion tracking)
+     * @param pageSize the page size being used by the asset stream
+     * @param seen (empty) set through which to detect any duplicate assets in the stream
+     */
+    public void streamAssets(
+            Stream<Asset> stream,
+            RowGenerator valuesForRow,
+            final long totalAssetCount,
+            final int pageSize,
+            GuidSet seen) {
         log.info("Extracting a total of {} assets...", totalAssetCount);
         AtomicLong count = new AtomicLong(0);
-        ConcurrentHashMap<String, String> map = new ConcurrentHashMap<>();
         stream.forEach(a -> {
             long localCount = count.getAndIncrement();
             if (localCount % pageSize == 0) {
@@ -81,50 +200,181 @@ public class CSVWriter implements Closeable {
                         " ... processed {}/{} ({}%)",
                         localCount, totalAssetCount, Math.round(((double) localCount / totalAssetCount) * 100));
             }
-            String duplicate = map.put(a.getGuid(), a.getTypeName() + "::" + a.getGuid());
-            if (duplicate != null) {
-                log.warn("Hit a duplicate asset entry — there could be page skew: {}", duplicate);
-            }
-            Iterable<String> values = valuesForRow.valuesFromAsset(a);
-            synchronized (writer) {
-                writer.writeRow(values);
+            if (!seen.add(a.getGuid())) {
+                log.warn("Hit a duplicate asset entry — there could be page skew: {}::{}", a.getTypeName(), a.getGuid());
             }
+            writeRow(valuesForRow.valuesFromAsset(a));
         });
-        log.info("Total unique assets extracted: {}", map.size());
+        // Hand off whatever remains buffered on each thread
+        flushEncoders();
+        log.info("Total unique assets extracted: {}", seen.size());
+        if (seen.getDuplicates() > 0) {
+            log.warn("Total duplicate asset entries: {}", seen.getDuplicates());
+        }
+    }
+
+    /**
+     * Finish writing everything that has been written into the CSV, and mark it as complete.
+     * When writing into S3 (or producing a file only once complete), this is what creates the object
+     * (or file): if the writer is closed without being completed, the object (or file) is discarded.
+     *
+     * @throws IOException if the CSV could not be written in full
+     */
+    public void complete() throws IOException {
+        finish();
+        if (s3Object != null) {
+            s3Object.complete();
+        }
+        if (staging != null) {
+            channel.close();
+            Files.move(staging, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        completed = true;
     }
 
     /** {@inheritDoc} */
     @Override
     public void close() throws IOException {
-        writer.close();
+        try {
+            finish();
+        } finally {
+            channel.close();
+            if (staging != null && !completed) {
+                Files.deleteIfExists(staging);
+            }
+        }
+    }
+
+    private void finish() throws IOException {
+        if (!finished) {
+            finished = true;
+            try {
+                flushEncoders();
+            } finally {
+                stopWriter();
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void stopWriter() throws IOException {
+        try {
+            chunks.put(END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the CSV file to be written.");
+        }
+    }
+
+    private void flushEncoders() {
+        for (Encoder encoder : encoders.values()) {
+            try {
+                encoder.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        encoders.clear();
+    }
+
+    /**
+     * Write each chunk to the channel as it arrives, until there are no more chunks to write.
+     */
+    private void writeChunks() {
+        try {
+            ByteBuffer chunk = chunks.take();
+            while (chunk != END) {
+                if (failure == null) {
+                    try {
+                        while (chunk.hasRemaining()) {
+                            channel.write(chunk);
+                        }
+                    } catch (IOException e) {
+                        log.error("Unable to write to the CSV file.", e);
+                        failure = e;
+                    }
+                }
+                // Note: keep draining the queue even after a failure, so that producers never block
+                chunk = chunks.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
-     * To allow us to safely parallel-write files across threads.
+     * Encodes rows into a buffer owned by a single thread, handing off the encoded bytes to the
+     * writer thread once the buffer fills up (and when closed). Chunks are only ever handed off
+     * between rows, so that a row can never be split across chunks (which could then be interleaved
+     * with the chunks of other threads).
      */
-    private static final class ThreadSafeWriter extends Writer implements Closeable {
-        private final BufferedWriter writer;
+    private final class Encoder extends Writer {
+        private final StringBuilder buffer = new StringBuilder(CHUNK_SIZE + 1024);
+        private final CsvWriter csv;
+        private boolean closed = false;
 
-        public ThreadSafeWriter(String filePath) throws IOException {
-            writer = Files.newBufferedWriter(Paths.get(filePath), UTF_8);
+        Encoder() {
+            csv = CsvWriter.builder()
+                    .fieldSeparator(fieldSeparator)
+                    .quoteCharacter('"')
+                    .quoteStrategy(QuoteStrategy.REQUIRED)
+                    .lineDelimiter(LineDelimiter.PLATFORM)
+                    .build(this);
+        }
+
+        void writeRow(Iterable<String> values) {
+            try {
+                csv.writeRow(values);
+                // Push the remainder of the row out of the CSV writer's own cache, so the buffer ends on the row
+                csv.flush();
+                if (buffer.length() >= CHUNK_SIZE) {
+                    handOff();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
 
         /** {@inheritDoc} */
         @Override
-        public synchronized void write(char[] cbuf, int off, int len) throws IOException {
-            writer.write(cbuf, off, len);
+        public void write(char[] cbuf, int off, int len) {
+            // Note: this can be called part-way through a row, so never hand off from here
+            buffer.append(cbuf, off, len);
         }
 
         /** {@inheritDoc} */
         @Override
-        public synchronized void flush() throws IOException {
-            writer.flush();
+        public void flush() {
+            // Nothing to do: chunks are handed off once they are large enough, or on close
         }
 
         /** {@inheritDoc} */
         @Override
-        public synchronized void close() throws IOException {
-            writer.close();
+        public void close() throws IOException {
+            // Closing the CSV writer pushes anything it has buffered into this writer (and re-enters close)
+            if (!closed) {
+                closed = true;
+                csv.close();
+                handOff();
+            }
+        }
+
+        private void handOff() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            if (buffer.length() > 0) {
+                try {
+                    chunks.put(UTF_8.encode(CharBuffer.wrap(buffer)));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while handing off rows to be written.");
+                }
+                buffer.setLength(0);
+            }
         }
     }
 }
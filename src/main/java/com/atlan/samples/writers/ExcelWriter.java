@@ -6,22 +6,66 @@ import com.atlan.model.enums.AtlanEnum;
 import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.common.usermodel.HyperlinkType;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 /**
  * Utility class for creating and writing to Excel files, using Apache POI.
+ * Any sheet that grows beyond the maximum number of rows per sheet automatically rolls over
+ * into a continuation sheet (with the same header), so that no report can exceed Excel's row limit.
  */
+@Slf4j
 public class ExcelWriter {
 
+    /** Maximum number of data rows that fit into a single sheet (beneath its header row). */
+    public static final int MAX_ROWS_PER_SHEET = SpreadsheetVersion.EXCEL2007.getLastRowIndex();
+
+    /** Maximum length of a sheet's name. */
+    private static final int MAX_SHEET_NAME_LENGTH = 31;
+
+    /** Maximum number of rows waiting to be appended, before any further rows must wait. */
+    private static final int ROW_QUEUE_CAPACITY = 1024;
+
+    /** Maximum number of rows that can be built ahead of the next row to append (for any single call). */
+    private static final int REORDER_WINDOW = 256;
+
+    /** Number of threads on which to build rows (for any single call), before handing them off to be appended. */
+    private static final int BUILDER_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /** Marker to signal the writer thread that there are no more rows to append (to any sheet). */
+    private static final PendingRow STOP = new PendingRow(null, null, -1);
+
     private final SXSSFWorkbook workbook;
     private final CellStyle headerStyle;
     private final CellStyle dataStyle;
     private final CellStyle linkStyle;
+    private final int maxRowsPerSheet;
+    private final Map<Sheet, SheetParts> sheetParts = new ConcurrentHashMap<>();
+
+    // Rows waiting to be appended (to any sheet) by the single writer thread, which is only started when needed
+    private final BlockingQueue<PendingRow> queue = new ArrayBlockingQueue<>(ROW_QUEUE_CAPACITY);
+    private Thread writer = null;
 
     /**
      * Construct a new Excel file writer.
@@ -30,6 +74,18 @@ public class ExcelWriter {
      * @throws IOException on any errors creating or accessing the file
      */
     public ExcelWriter(int batch) throws IOException {
+        this(batch, MAX_ROWS_PER_SHEET);
+    }
+
+    /**
+     * Construct a new Excel file writer, rolling over to a new sheet at the specified number of rows.
+     *
+     * @param batch how many records to write in-memory before flushing to disk
+     * @param maxRowsPerSheet maximum number of data rows to write into a sheet before rolling over to a new one
+     * @throws IOException on any errors creating or accessing the file
+     */
+    public ExcelWriter(int batch, int maxRowsPerSheet) throws IOException {
+        this.maxRowsPerSheet = Math.max(1, Math.min(MAX_ROWS_PER_SHEET, maxRowsPerSheet));
         workbook = new SXSSFWorkbook(batch);
         headerStyle = createHeaderStyle();
         dataStyle = createDataStyle();
@@ -43,7 +99,13 @@ public class ExcelWriter {
      * @return the worksheet
      */
     public Sheet createSheet(String name) {
-        return workbook.createSheet(name);
+        Sheet sheet;
+        // Note: sheets may be created (rolled over) while other sheets are being written
+        synchronized (workbook) {
+            sheet = workbook.createSheet(name);
+        }
+        sheetParts.put(sheet, new SheetParts(name, sheet));
+        return sheet;
     }
 
     /**
@@ -53,6 +115,7 @@ public class ExcelWriter {
      * @throws IOException on any errors creating or accessing the file
      */
     public void create(String fileLocation) throws IOException {
+        stopWriter();
         FileOutputStream fos = new FileOutputStream(fileLocation);
         workbook.write(fos);
         workbook.close();
@@ -60,6 +123,20 @@ public class ExcelWriter {
         fos.close();
     }
 
+    /**
+     * Flush out the contents of the workbook to the provided output stream (for example, straight into S3).
+     * Note: the output stream is not closed by this method.
+     *
+     * @param out output stream to which to write the XLSX file
+     * @throws IOException on any errors writing to the output stream
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        stopWriter();
+        workbook.write(out);
+        workbook.close();
+        workbook.dispose(); // cleanup temporary files
+    }
+
     /**
      * Flush out the contents of the workbook to a ByteArrayOutputStream.
      *
@@ -67,6 +144,7 @@ public class ExcelWriter {
      * @throws IOException on any errors creating or writing to the byte array output stream
      */
     public ByteArrayOutputStream asByteArray() throws IOException {
+        stopWriter();
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         workbook.write(baos);
         workbook.close();
@@ -130,6 +208,16 @@ public class ExcelWriter {
      * @param headers ordered map of header names and descriptions
      */
     public void addHeader(Sheet worksheet, Map<String, String> headers) {
+        SheetParts parts = sheetParts.get(worksheet);
+        if (parts != null) {
+            parts.headers = headers;
+        }
+        synchronized (workbook) {
+            writeHeader(worksheet, headers);
+        }
+    }
+
+    private void writeHeader(Sheet worksheet, Map<String, String> headers) {
         Row header = worksheet.createRow(0);
         int colIdx = 0;
         for (Map.Entry<String, String> entry : headers.entrySet()) {
@@ -148,23 +236,273 @@ public class ExcelWriter {
      * @param data the row of data to add
      */
     public void appendRow(Sheet worksheet, List<DataCell> data) {
-        Row row = worksheet.createRow(worksheet.getLastRowNum() + 1);
-        for (int i = 0; i < data.size(); i++) {
-            DataCell datum = data.get(i);
-            switch (datum.getType()) {
-                case DOUBLE:
-                    addDataCell(row, i, datum.getDecValue());
-                    break;
-                case LONG:
-                    addDataCell(row, i, datum.getLongValue());
-                    break;
-                case BOOLEAN:
-                    addDataCell(row, i, datum.getBoolValue());
-                    break;
-                case STRING:
-                default:
-                    addDataCell(row, i, datum.getStrValue());
-                    break;
+        // Note: the workbook (its styles, and so on) is shared by every sheet, so only append one row at a time
+        synchronized (workbook) {
+            Row row = nextRow(worksheet);
+            for (int i = 0; i < data.size(); i++) {
+                DataCell datum = data.get(i);
+                switch (datum.getType()) {
+                    case DOUBLE:
+                        addDataCell(row, i, datum.getDecValue());
+                        break;
+                    case LONG:
+                        addDataCell(row, i, datum.getLongValue());
+                        break;
+                    case BOOLEAN:
+                        addDataCell(row, i, datum.getBoolValue());
+                        break;
+                    case STRING:
+                    default:
+                        addDataCell(row, i, datum.getStrValue());
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a row of data to the end of a worksheet, straight from a row buffer (without any per-cell objects).
+     * The buffer can be cleared and reused for the next row as soon as this returns.
+     *
+     * @param worksheet the worksheet into which to add the row
+     * @param data the row of data to add
+     */
+    public void appendRow(Sheet worksheet, RowBuffer data) {
+        // Note: the workbook (its styles, and so on) is shared by every sheet, so only append one row at a time
+        synchronized (workbook) {
+            Row row = nextRow(worksheet);
+            for (int i = 0; i < data.size; i++) {
+                switch (data.types[i]) {
+                    case RowBuffer.DOUBLE:
+                        addDataCell(row, i, data.doubles[i]);
+                        break;
+                    case RowBuffer.LONG:
+                        addDataCell(row, i, data.longs[i]);
+                        break;
+                    case RowBuffer.BOOLEAN:
+                        addDataCell(row, i, data.booleans[i]);
+                        break;
+                    case RowBuffer.STRING:
+                    default:
+                        addDataCell(row, i, data.strings[i]);
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Create the next row at the end of a worksheet, rolling over to a new sheet if the current one is full.
+     *
+     * @param worksheet the worksheet into which to add the row
+     * @return the (empty) row
+     */
+    private Row nextRow(Sheet worksheet) {
+        SheetParts parts = sheetParts.get(worksheet);
+        Sheet target = parts == null ? worksheet : parts.getCurrent();
+        return target.createRow(target.getLastRowNum() + 1);
+    }
+
+    /**
+     * Add rows of data to the end of a worksheet, where the rows are built concurrently but appended
+     * in the order of the items they are built from. Each item is taken from the stream in order and
+     * tagged with its position, its row is built on a pool of threads, and the built rows are handed
+     * off (through a bounded queue) to a single writer thread — since a streaming workbook only supports
+     * a single writer. The writer holds back any row built ahead of its turn in a small reorder buffer,
+     * so only the cheap append itself is sequential and the rows always come out in a stable order.
+     * The writer thread is shared by every sheet of the workbook, so rows for different sheets can
+     * also be produced concurrently (for example, by a separate task for each sheet).
+     * At most a fixed window of rows can be built ahead of the next row to append, and row buffers
+     * are recycled once appended, so the memory used is bounded rather than growing with the number of rows.
+     *
+     * @param worksheet the worksheet into which to add the rows
+     * @param items from which to produce the rows, in the order in which to append them
+     * @param toRow fills the (empty) row buffer it is given with the row of data for an item
+     * @param <T> type of the items from which the rows are produced
+     */
+    public <T> void appendRows(Sheet worksheet, Stream<T> items, BiConsumer<T, RowBuffer> toRow) {
+        startWriter();
+        Rows rows = new Rows();
+        ExecutorService builders = Executors.newFixedThreadPool(BUILDER_THREADS, r -> {
+            Thread thread = new Thread(r, "excel-row-builder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long position = 0;
+        try {
+            Iterator<T> iterator = items.iterator();
+            while (iterator.hasNext()) {
+                T item = iterator.next();
+                long tag = position++;
+                // Wait for the writer to catch up, if this row would be too far ahead of the next one to append
+                rows.window.acquireUninterruptibly();
+                builders.execute(() -> handOff(new PendingRow(worksheet, buildRow(rows, item, toRow), rows, tag)));
+            }
+        } finally {
+            builders.shutdown();
+            // The writer knows every row has been appended once it has appended as many as this marker says
+            handOff(new PendingRow(worksheet, rows, position));
+            try {
+                rows.appended.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for rows to be appended.", e);
+            }
+        }
+        // Safe to read, as the writer thread has appended (or skipped) every one of these rows
+        if (rows.failure != null) {
+            throw rows.failure;
+        }
+    }
+
+    /**
+     * Build the row for a single item, using a recycled row buffer where one is available.
+     *
+     * @param rows tracking the call to append rows
+     * @param item from which to produce the row
+     * @param toRow fills the (empty) row buffer it is given with the row of data for an item
+     * @param <T> type of the item from which the row is produced
+     * @return the row buffer, or null if the row could not be built (so is to be skipped)
+     */
+    private static <T> RowBuffer buildRow(Rows rows, T item, BiConsumer<T, RowBuffer> toRow) {
+        RowBuffer row = rows.recycled.poll();
+        if (row == null) {
+            row = new RowBuffer();
+        }
+        try {
+            toRow.accept(item, row);
+            return row;
+        } catch (RuntimeException e) {
+            rows.fail(e);
+            rows.recycled.offer(row.clear());
+            return null;
+        }
+    }
+
+    /**
+     * Start the single writer thread, if it is not already running.
+     */
+    private synchronized void startWriter() {
+        if (writer == null) {
+            writer = new Thread(this::writeRows, "excel-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Stop the single writer thread (if it was started), once it has appended every row handed off to it.
+     */
+    private synchronized void stopWriter() {
+        if (writer != null) {
+            handOff(STOP);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for rows to be appended.", e);
+            }
+            writer = null;
+        }
+    }
+
+    /**
+     * Append every row handed off to the writer thread, in the order of its position within the call
+     * that produced it, until stopped.
+     */
+    private void writeRows() {
+        try {
+            PendingRow next = queue.take();
+            while (next != STOP) {
+                Rows rows = next.rows;
+                if (next.end) {
+                    rows.total = next.position;
+                } else {
+                    rows.waiting.put(next.position, next);
+                }
+                // Append as many rows as are now ready, in order
+                PendingRow ready = rows.waiting.remove(rows.next);
+                while (ready != null) {
+                    if (ready.row != null) {
+                        if (rows.failure == null) {
+                            try {
+                                appendRow(ready.sheet, ready.row);
+                            } catch (RuntimeException e) {
+                                rows.fail(e);
+                            }
+                        }
+                        // Note: keep draining the queue even after a failure, so that producers never block
+                        rows.recycled.offer(ready.row.clear());
+                    }
+                    rows.next++;
+                    rows.window.release();
+                    ready = rows.waiting.remove(rows.next);
+                }
+                if (rows.next == rows.total) {
+                    rows.appended.countDown();
+                }
+                next = queue.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handOff(PendingRow row) {
+        try {
+            queue.put(row);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handing off rows to be appended.", e);
+        }
+    }
+
+    /**
+     * A row waiting to be appended to a sheet by the writer thread, tagged with its position within the
+     * call that produced it (with no row, a row that could not be built and is to be skipped). Once every
+     * row has been handed off for a call, a marker carries the total number of rows handed off.
+     */
+    private static final class PendingRow {
+        private final Sheet sheet;
+        private final RowBuffer row;
+        private final Rows rows;
+        private final long position;
+        private final boolean end;
+
+        PendingRow(Sheet sheet, RowBuffer row, Rows rows, long position) {
+            this(sheet, row, rows, position, false);
+        }
+
+        PendingRow(Sheet sheet, Rows rows, long total) {
+            this(sheet, null, rows, total, true);
+        }
+
+        private PendingRow(Sheet sheet, RowBuffer row, Rows rows, long position, boolean end) {
+            this.sheet = sheet;
+            this.row = row;
+            this.rows = rows;
+            this.position = position;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Tracks the rows handed off by a single call to append rows.
+     */
+    private static final class Rows {
+        private final Queue<RowBuffer> recycled = new ConcurrentLinkedQueue<>();
+        private final Semaphore window = new Semaphore(REORDER_WINDOW);
+        private final CountDownLatch appended = new CountDownLatch(1);
+        private volatile RuntimeException failure = null;
+
+        // Only ever accessed by the writer thread: rows built ahead of their turn, keyed by position
+        private final Map<Long, PendingRow> waiting = new HashMap<>();
+        private long next = 0;
+        private long total = -1;
+
+        private synchronized void fail(RuntimeException e) {
+            if (failure == null) {
+                failure = e;
             }
         }
     }
@@ -266,6 +604,142 @@ public class ExcelWriter {
         cell.setCellStyle(dataStyle);
     }
 
+    /**
+     * Tracks the sheet that is currently being written for a (logical) sheet of the report,
+     * rolling over to a new sheet whenever the current one is full.
+     * Note: like the sheet itself, this must only be written to by a single thread at a time.
+     */
+    private final class SheetParts {
+        private final String name;
+        private Sheet current;
+        private int part = 1;
+        private Map<String, String> headers = null;
+
+        SheetParts(String name, Sheet first) {
+            this.name = name;
+            this.current = first;
+        }
+
+        Sheet getCurrent() {
+            if (current.getLastRowNum() >= maxRowsPerSheet) {
+                part++;
+                String suffix = " (" + part + ")";
+                String base = name.length() + suffix.length() > MAX_SHEET_NAME_LENGTH
+                        ? name.substring(0, MAX_SHEET_NAME_LENGTH - suffix.length())
+                        : name;
+                log.info(
+                        "Sheet {} is full ({} rows) — continuing in sheet: {}", name, maxRowsPerSheet, base + suffix);
+                synchronized (workbook) {
+                    current = workbook.createSheet(base + suffix);
+                    if (headers != null) {
+                        writeHeader(current, headers);
+                    }
+                }
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Reusable buffer for a single row of data, holding the value of each cell in parallel primitive arrays
+     * (indexed by column) rather than as a separate (boxed) object per cell. Build up a row by adding its
+     * values in column order, append it, and then clear it to build up the next row.
+     * Note: a buffer must only be used by a single thread at a time.
+     */
+    public static final class RowBuffer {
+
+        private static final byte STRING = 0;
+        private static final byte LONG = 1;
+        private static final byte DOUBLE = 2;
+        private static final byte BOOLEAN = 3;
+
+        private byte[] types;
+        private long[] longs;
+        private double[] doubles;
+        private boolean[] booleans;
+        private String[] strings;
+        private int size = 0;
+
+        /**
+         * Construct a new row buffer.
+         */
+        public RowBuffer() {
+            this(32);
+        }
+
+        /**
+         * Construct a new row buffer.
+         *
+         * @param capacity number of cells the buffer can hold before it needs to grow
+         */
+        public RowBuffer(int capacity) {
+            types = new byte[capacity];
+            longs = new long[capacity];
+            doubles = new double[capacity];
+            booleans = new boolean[capacity];
+            strings = new String[capacity];
+        }
+
+        /**
+         * Empty the buffer, so it can be reused for another row.
+         *
+         * @return the (now empty) buffer
+         */
+        public RowBuffer clear() {
+            // Release the strings, so they are not retained by the buffer any longer than necessary
+            Arrays.fill(strings, 0, size, null);
+            size = 0;
+            return this;
+        }
+
+        /**
+         * Number of cells in the row.
+         *
+         * @return the number of cells added to the row since it was last cleared
+         */
+        public int size() {
+            return size;
+        }
+
+        public RowBuffer add(double value) {
+            doubles[next(DOUBLE)] = value;
+            return this;
+        }
+
+        public RowBuffer add(long value) {
+            longs[next(LONG)] = value;
+            return this;
+        }
+
+        public RowBuffer add(boolean value) {
+            booleans[next(BOOLEAN)] = value;
+            return this;
+        }
+
+        public RowBuffer add(String value) {
+            strings[next(STRING)] = value == null ? "" : value;
+            return this;
+        }
+
+        public RowBuffer add(AtlanEnum value) {
+            strings[next(STRING)] = value == null ? "" : value.getValue();
+            return this;
+        }
+
+        private int next(byte type) {
+            if (size == types.length) {
+                int capacity = Math.max(8, size * 2);
+                types = Arrays.copyOf(types, capacity);
+                longs = Arrays.copyOf(longs, capacity);
+                doubles = Arrays.copyOf(doubles, capacity);
+                booleans = Arrays.copyOf(booleans, capacity);
+                strings = Arrays.copyOf(strings, capacity);
+            }
+            types[size] = type;
+            return size++;
+        }
+    }
+
     @Getter
     public static final class DataCell {
 
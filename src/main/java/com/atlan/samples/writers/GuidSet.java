@@ -0,0 +1,257 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+/* Copyright 2023 Atlan Pte. Ltd. */
+package com.atlan.samples.writers;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compact, thread-safe set of GUIDs, used to detect any duplicate assets (page skew) when streaming
+ * very large numbers of assets. Each GUID is stored as two primitive longs rather than as a string, either:
+ * <ul>
+ *     <li>exactly, in an open-addressed hash table (striped across segments to limit contention), or</li>
+ *     <li>approximately, in a Bloom filter — using far less memory again, at the cost of a small chance
+ *         that a GUID is (incorrectly) reported as a duplicate.</li>
+ * </ul>
+ */
+public abstract class GuidSet {
+
+    private final LongAdder unique = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+
+    /**
+     * Create a set that detects duplicate GUIDs exactly.
+     *
+     * @param expected number of GUIDs that will be added to the set (used for initial sizing)
+     * @return an empty set
+     */
+    public static GuidSet exact(long expected) {
+        return new Exact(expected);
+    }
+
+    /**
+     * Create a set that detects duplicate GUIDs approximately, using a Bloom filter.
+     *
+     * @param expected number of GUIDs that will be added to the set (used for sizing the filter)
+     * @param falsePositiveRate probability (for example, 0.001) that a GUID is reported as a duplicate when it is not
+     * @return an empty set
+     */
+    public static GuidSet approximate(long expected, double falsePositiveRate) {
+        return new Bloom(expected, falsePositiveRate);
+    }
+
+    /**
+     * Add a GUID to the set.
+     *
+     * @param guid to add
+     * @return true if the GUID was not already in the set, or false if it was (a duplicate)
+     */
+    public boolean add(String guid) {
+        long hi;
+        long lo;
+        if (isUuid(guid)) {
+            hi = (parseHex(guid, 0, 8) << 32) | (parseHex(guid, 9, 13) << 16) | parseHex(guid, 14, 18);
+            lo = (parseHex(guid, 19, 23) << 48) | parseHex(guid, 24, 36);
+        } else {
+            // Not a UUID (for example, a placeholder), so fallback to a 128-bit hash of the value
+            hi = hash(guid, 0xcbf29ce484222325L);
+            lo = hash(guid, 0x9e3779b97f4a7c15L);
+        }
+        boolean added = add(hi, lo);
+        if (added) {
+            unique.increment();
+        } else {
+            duplicates.increment();
+        }
+        return added;
+    }
+
+    /**
+     * Retrieve the number of unique GUIDs that have been added to the set.
+     *
+     * @return the number of unique GUIDs
+     */
+    public long size() {
+        return unique.sum();
+    }
+
+    /**
+     * Retrieve the number of duplicate GUIDs that have been added to the set.
+     *
+     * @return the number of duplicates
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * Add a GUID (as its two halves) to the set.
+     *
+     * @param hi most significant bits of the GUID
+     * @param lo least significant bits of the GUID
+     * @return true if the GUID was not already in the set, otherwise false
+     */
+    protected abstract boolean add(long hi, long lo);
+
+    private static boolean isUuid(String guid) {
+        if (guid.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = guid.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHex(String value, int from, int to) {
+        long result = 0;
+        for (int i = from; i < to; i++) {
+            result = (result << 4) | Character.digit(value.charAt(i), 16);
+        }
+        return result;
+    }
+
+    private static long hash(String value, long seed) {
+        long h = seed;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /** Finalizer from MurmurHash3, to spread the bits of a value across all 64 bits. */
+    static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Exact set, as an open-addressed (linear probing) hash table of pairs of longs.
+     * The table is split into segments, each guarded by its own lock, so that many threads can add at once.
+     */
+    private static final class Exact extends GuidSet {
+        private static final int SEGMENTS = 64;
+        private final Segment[] segments = new Segment[SEGMENTS];
+
+        Exact(long expected) {
+            int perSegment = (int) Math.min(1 << 28, Math.max(16, expected / SEGMENTS));
+            for (int i = 0; i < SEGMENTS; i++) {
+                segments[i] = new Segment(perSegment);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected boolean add(long hi, long lo) {
+            long h = mix(hi ^ mix(lo));
+            return segments[(int) (h >>> 58)].add(hi, lo, h);
+        }
+    }
+
+    private static final class Segment {
+        private static final double MAX_LOAD = 0.7;
+
+        // Pairs of longs: [hi, lo] for each slot, with (0, 0) marking an empty slot
+        private long[] slots;
+        private int size = 0;
+        private boolean hasZero = false;
+
+        Segment(int expected) {
+            int capacity = Integer.highestOneBit((int) Math.ceil(expected / MAX_LOAD)) << 1;
+            slots = new long[capacity * 2];
+        }
+
+        synchronized boolean add(long hi, long lo, long hash) {
+            if (hi == 0 && lo == 0) {
+                boolean added = !hasZero;
+                hasZero = true;
+                return added;
+            }
+            if (insert(slots, hi, lo, hash)) {
+                size++;
+                if (size > (slots.length / 2) * MAX_LOAD) {
+                    resize();
+                }
+                return true;
+            }
+            return false;
+        }
+
+        private void resize() {
+            long[] larger = new long[slots.length * 2];
+            for (int i = 0; i < slots.length; i += 2) {
+                long hi = slots[i];
+                long lo = slots[i + 1];
+                if (hi != 0 || lo != 0) {
+                    insert(larger, hi, lo, mix(hi ^ mix(lo)));
+                }
+            }
+            slots = larger;
+        }
+
+        private static boolean insert(long[] table, long hi, long lo, long hash) {
+            int mask = (table.length / 2) - 1;
+            int slot = (int) hash & mask;
+            while (true) {
+                int i = slot * 2;
+                if (table[i] == 0 && table[i + 1] == 0) {
+                    table[i] = hi;
+                    table[i + 1] = lo;
+                    return true;
+                } else if (table[i] == hi && table[i + 1] == lo) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+
+    /**
+     * Approximate set, as a Bloom filter (using double hashing to derive each of its hash functions).
+     */
+    private static final class Bloom extends GuidSet {
+        private final AtomicLongArray bits;
+        private final long numBits;
+        private final int numHashes;
+
+        Bloom(long expected, double falsePositiveRate) {
+            long n = Math.max(1024, expected);
+            double p = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+            long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) / 64);
+            this.bits = new AtomicLongArray(words);
+            this.numBits = (long) words * 64;
+            this.numHashes = Math.max(1, (int) Math.round(((double) numBits / n) * Math.log(2)));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected boolean add(long hi, long lo) {
+            long h1 = mix(hi ^ mix(lo));
+            long h2 = mix(lo ^ mix(hi)) | 1;
+            boolean added = false;
+            for (int i = 0; i < numHashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, numBits);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << (bit & 63);
+                long previous = bits.getAndAccumulate(word, mask, (a, b) -> a | b);
+                if ((previous & mask) == 0) {
+                    added = true;
+                }
+            }
+            return added;
+        }
+    }
+}
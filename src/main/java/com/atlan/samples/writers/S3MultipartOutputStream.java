@@ -0,0 +1,215 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+/* Copyright 2023 Atlan Pte. Ltd. */
+package com.atlan.samples.writers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+/**
+ * Output stream that writes straight into an S3 object, uploading the bytes as parts of a multipart
+ * upload as soon as each part fills up. At most a single part is ever buffered in memory, no matter
+ * how large the object becomes. (Objects smaller than a single part are uploaded directly, without
+ * a multipart upload.)
+ * The object is only created once {@link #complete()} is called: closing the stream without completing
+ * it (for example, because something failed while writing) discards everything written, so that an
+ * incomplete object is never published.
+ */
+@Slf4j
+public class S3MultipartOutputStream extends OutputStream {
+
+    /** Smallest part size S3 allows for any but the last part of a multipart upload. */
+    public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    /** Default size of each part to upload. */
+    public static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String key;
+    private final String contentType;
+    private final byte[] buffer;
+    private final List<CompletedPart> parts = new ArrayList<>();
+    private int count = 0;
+    private String uploadId = null;
+    private boolean closed = false;
+    private boolean completed = false;
+
+    /**
+     * Start writing a new S3 object, using the default part size.
+     *
+     * @param s3Client client through which to access S3
+     * @param bucket in which to write the object
+     * @param key of the object to write
+     * @param contentType of the object
+     */
+    public S3MultipartOutputStream(S3Client s3Client, String bucket, String key, String contentType) {
+        this(s3Client, bucket, key, contentType, DEFAULT_PART_SIZE);
+    }
+
+    /**
+     * Start writing a new S3 object.
+     *
+     * @param s3Client client through which to access S3
+     * @param bucket in which to write the object
+     * @param key of the object to write
+     * @param contentType of the object
+     * @param partSize size (in bytes) of each part to upload (at least {@link #MIN_PART_SIZE})
+     */
+    public S3MultipartOutputStream(
+            S3Client s3Client, String bucket, String key, String contentType, int partSize) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.key = key;
+        this.contentType = contentType;
+        this.buffer = new byte[Math.max(MIN_PART_SIZE, partSize)];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (count == buffer.length) {
+            uploadPart();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            if (count == buffer.length) {
+                uploadPart();
+            }
+            int chunk = Math.min(remaining, buffer.length - count);
+            System.arraycopy(b, offset, buffer, count, chunk);
+            count += chunk;
+            offset += chunk;
+            remaining -= chunk;
+        }
+    }
+
+    /**
+     * Upload whatever remains, and complete the object. (Closes the stream.)
+     *
+     * @throws IOException if the object could not be written to S3
+     */
+    public void complete() throws IOException {
+        ensureOpen();
+        closed = true;
+        try {
+            if (uploadId == null) {
+                // Never filled a single part, so just put the object directly
+                log.info("Writing to: {}/{}", bucket, key);
+                s3Client.putObject(
+                        PutObjectRequest.builder()
+                                .bucket(bucket)
+                                .key(key)
+                                .contentType(contentType)
+                                .build(),
+                        getBody());
+            } else {
+                if (count > 0) {
+                    uploadPart();
+                }
+                s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .multipartUpload(
+                                CompletedMultipartUpload.builder().parts(parts).build())
+                        .build());
+                log.info(" ... completed {}/{} ({} parts)", bucket, key, parts.size());
+            }
+            completed = true;
+        } catch (SdkException e) {
+            abort();
+            throw new IOException("Unable to complete the S3 object: " + bucket + "/" + key, e);
+        }
+    }
+
+    /**
+     * Close the stream. Unless the object was completed first, this discards everything written
+     * (aborting any multipart upload), and no object is created.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            if (!completed) {
+                log.warn("Discarding incomplete S3 object: {}/{}", bucket, key);
+                abort();
+            }
+        }
+    }
+
+    private void uploadPart() throws IOException {
+        try {
+            if (uploadId == null) {
+                log.info("Writing (multipart) to: {}/{}", bucket, key);
+                uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                                .bucket(bucket)
+                                .key(key)
+                                .contentType(contentType)
+                                .build())
+                        .uploadId();
+            }
+            int partNumber = parts.size() + 1;
+            UploadPartResponse response = s3Client.uploadPart(
+                    UploadPartRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .uploadId(uploadId)
+                            .partNumber(partNumber)
+                            .contentLength((long) count)
+                            .build(),
+                    getBody());
+            parts.add(CompletedPart.builder()
+                    .partNumber(partNumber)
+                    .eTag(response.eTag())
+                    .build());
+            count = 0;
+        } catch (SdkException e) {
+            closed = true;
+            abort();
+            throw new IOException("Unable to upload part of the S3 object: " + bucket + "/" + key, e);
+        }
+    }
+
+    private RequestBody getBody() {
+        // Note: streams from the buffer directly, rather than making yet another copy of it
+        return RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, count), count);
+    }
+
+    private void abort() {
+        if (uploadId != null) {
+            try {
+                s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .build());
+            } catch (SdkException e) {
+                log.error("Unable to abort the multipart upload for: {}/{}", bucket, key, e);
+            }
+            uploadId = null;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream already closed: " + bucket + "/" + key);
+        }
+    }
+}
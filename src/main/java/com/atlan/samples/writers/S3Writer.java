@@ -16,6 +16,9 @@ public class S3Writer {
 
     private static final Logger log = LoggerFactory.getLogger(S3Writer.class);
 
+    public static final String EXCEL_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    public static final String CSV_CONTENT_TYPE = "text/csv";
+
     private final S3Client s3Client;
 
     public S3Writer(S3Client s3Client) {
@@ -25,10 +28,24 @@ public class S3Writer {
     public void putExcelFile(ByteArrayOutputStream outputStream, String bucket, String key) {
         Map<String, String> metadata = new HashMap<>();
         metadata.put("Content-Length", Integer.toString(outputStream.size()));
-        metadata.put("Content-Type", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        metadata.put("Content-Type", EXCEL_CONTENT_TYPE);
         putFile(metadata, outputStream, bucket, key);
     }
 
+    /**
+     * Open a stream that writes straight into the specified S3 object, uploading it in parts as it is written
+     * (so that the full contents never need to be held in memory). The object is only created once the stream
+     * is completed: closing it without completing it discards everything written.
+     *
+     * @param bucket in which to write the object
+     * @param key of the object to write
+     * @param contentType of the object
+     * @return an output stream into the object
+     */
+    public S3MultipartOutputStream openStream(String bucket, String key, String contentType) {
+        return new S3MultipartOutputStream(s3Client, bucket, key, contentType);
+    }
+
     public void putFile(Map<String, String> metadata, ByteArrayOutputStream outputStream, String bucket, String key) {
         PutObjectRequest putObjectRequest = PutObjectRequest.builder()
                 .bucket(bucket)
@@ -0,0 +1,67 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+/* Copyright 2023 Atlan Pte. Ltd. */
+package com.atlan.samples.writers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.*;
+
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.reader.CsvRow;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.IntStream;
+import org.testng.annotations.Test;
+
+public class CSVWriterTest {
+
+    private static final int THREADS = 8;
+    private static final int ROWS_PER_THREAD = 200;
+
+    @Test(groups = {"CSVWriter.concurrent"})
+    void longRowsFromManyThreadsAreNeverInterleaved() throws IOException {
+        Path file = Files.createTempFile("csv-writer", ".csv");
+        try {
+            try (CSVWriter csv = new CSVWriter(file.toString())) {
+                csv.writeHeader(List.of("thread", "row", "payload"));
+                IntStream.range(0, THREADS).parallel().forEach(t -> {
+                    for (int r = 0; r < ROWS_PER_THREAD; r++) {
+                        csv.writeRow(List.of(String.valueOf(t), String.valueOf(r), getPayload(t, r)));
+                    }
+                });
+            }
+            Map<Integer, Integer> nextRow = new HashMap<>();
+            int rows = 0;
+            try (CsvReader reader = CsvReader.builder().build(file, UTF_8)) {
+                Iterator<CsvRow> it = reader.iterator();
+                assertEquals(it.next().getFields(), List.of("thread", "row", "payload"));
+                while (it.hasNext()) {
+                    CsvRow row = it.next();
+                    assertEquals(row.getFieldCount(), 3);
+                    int t = Integer.parseInt(row.getField(0));
+                    int r = Integer.parseInt(row.getField(1));
+                    assertEquals(row.getField(2), getPayload(t, r));
+                    // Rows from the same thread must stay in the order they were written
+                    assertEquals(r, (int) nextRow.getOrDefault(t, 0));
+                    nextRow.put(t, r + 1);
+                    rows++;
+                }
+            }
+            assertEquals(rows, THREADS * ROWS_PER_THREAD);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Produce a payload that is larger than FastCSV's own internal buffer, and which needs quoting.
+     */
+    private static String getPayload(int thread, int row) {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 12 * 1024) {
+            sb.append("thread ").append(thread).append(", row ").append(row).append(", \"quoted\"\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,176 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+/* Copyright 2023 Atlan Pte. Ltd. */
+package com.atlan.samples.writers;
+
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import org.testng.annotations.Test;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+public class S3MultipartOutputStreamTest {
+
+    private static final int PART_SIZE = S3MultipartOutputStream.MIN_PART_SIZE;
+
+    @Test(groups = {"S3MultipartOutputStream.small"})
+    void smallObjectIsPutDirectly() throws IOException {
+        LocalS3 s3 = new LocalS3();
+        byte[] content = getContent(1024);
+        try (S3MultipartOutputStream out = new S3MultipartOutputStream(s3, "bucket", "small.csv", "text/csv")) {
+            out.write(content);
+            out.complete();
+        }
+        assertEquals(s3.multipartUploads, 0);
+        assertEquals(s3.objects.get("bucket/small.csv"), content);
+    }
+
+    @Test(groups = {"S3MultipartOutputStream.large"})
+    void largeObjectIsUploadedInParts() throws IOException {
+        LocalS3 s3 = new LocalS3();
+        byte[] content = getContent(PART_SIZE * 2 + 123);
+        try (S3MultipartOutputStream out =
+                new S3MultipartOutputStream(s3, "bucket", "large.xlsx", "application/xlsx", PART_SIZE)) {
+            // Write in uneven pieces, to cross part boundaries mid-write
+            int offset = 0;
+            while (offset < content.length) {
+                int len = Math.min(777_777, content.length - offset);
+                out.write(content, offset, len);
+                offset += len;
+            }
+            out.complete();
+        }
+        assertEquals(s3.multipartUploads, 1);
+        assertEquals(s3.partSizes, List.of(PART_SIZE, PART_SIZE, 123));
+        assertEquals(s3.objects.get("bucket/large.xlsx"), content);
+        assertEquals(s3.aborted, 0);
+    }
+
+    @Test(groups = {"S3MultipartOutputStream.failure"})
+    void failedPartAbortsUpload() {
+        LocalS3 s3 = new LocalS3();
+        s3.failOnPart = 2;
+        byte[] content = getContent(PART_SIZE * 3);
+        S3MultipartOutputStream out = new S3MultipartOutputStream(s3, "bucket", "failed.csv", "text/csv", PART_SIZE);
+        assertThrows(IOException.class, () -> {
+            out.write(content);
+            out.complete();
+        });
+        assertEquals(s3.aborted, 1);
+        assertFalse(s3.objects.containsKey("bucket/failed.csv"));
+    }
+
+    @Test(groups = {"S3MultipartOutputStream.incomplete"})
+    void failedWriteDiscardsObject() {
+        LocalS3 s3 = new LocalS3();
+        byte[] content = getContent(PART_SIZE + 123);
+        assertThrows(IllegalStateException.class, () -> {
+            try (OutputStream out =
+                    new S3MultipartOutputStream(s3, "bucket", "partial.xlsx", "application/xlsx", PART_SIZE)) {
+                out.write(content);
+                throw new IllegalStateException("Simulated failure while writing the report");
+            }
+        });
+        assertEquals(s3.multipartUploads, 1);
+        assertEquals(s3.aborted, 1);
+        assertFalse(s3.objects.containsKey("bucket/partial.xlsx"));
+    }
+
+    @Test(groups = {"S3MultipartOutputStream.incomplete"})
+    void failedSmallWriteCreatesNoObject() {
+        LocalS3 s3 = new LocalS3();
+        assertThrows(IllegalStateException.class, () -> {
+            try (OutputStream out = new S3MultipartOutputStream(s3, "bucket", "partial.csv", "text/csv")) {
+                out.write(getContent(1024));
+                throw new IllegalStateException("Simulated failure while writing the report");
+            }
+        });
+        assertEquals(s3.multipartUploads, 0);
+        assertFalse(s3.objects.containsKey("bucket/partial.csv"));
+    }
+
+    private static byte[] getContent(int size) {
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+        return content;
+    }
+
+    /**
+     * In-memory stand-in for the parts of S3 used by the multipart output stream.
+     */
+    private static final class LocalS3 implements S3Client {
+        private final Map<String, byte[]> objects = new HashMap<>();
+        private final Map<Integer, byte[]> pending = new TreeMap<>();
+        private final List<Integer> partSizes = new ArrayList<>();
+        private int multipartUploads = 0;
+        private int aborted = 0;
+        private int failOnPart = -1;
+
+        @Override
+        public PutObjectResponse putObject(PutObjectRequest request, RequestBody body) {
+            objects.put(request.bucket() + "/" + request.key(), read(body));
+            return PutObjectResponse.builder().eTag("etag").build();
+        }
+
+        @Override
+        public CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest request) {
+            multipartUploads++;
+            return CreateMultipartUploadResponse.builder().uploadId("upload").build();
+        }
+
+        @Override
+        public UploadPartResponse uploadPart(UploadPartRequest request, RequestBody body) {
+            if (request.partNumber() == failOnPart) {
+                throw SdkClientException.create("Simulated failure");
+            }
+            byte[] part = read(body);
+            pending.put(request.partNumber(), part);
+            partSizes.add(part.length);
+            return UploadPartResponse.builder()
+                    .eTag("etag-" + request.partNumber())
+                    .build();
+        }
+
+        @Override
+        public CompleteMultipartUploadResponse completeMultipartUpload(CompleteMultipartUploadRequest request) {
+            ByteArrayOutputStream complete = new ByteArrayOutputStream();
+            for (CompletedPart part : request.multipartUpload().parts()) {
+                assertEquals(part.eTag(), "etag-" + part.partNumber());
+                complete.writeBytes(pending.get(part.partNumber()));
+            }
+            objects.put(request.bucket() + "/" + request.key(), complete.toByteArray());
+            return CompleteMultipartUploadResponse.builder().build();
+        }
+
+        @Override
+        public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest request) {
+            aborted++;
+            pending.clear();
+            return AbortMultipartUploadResponse.builder().build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "s3";
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+
+        private static byte[] read(RequestBody body) {
+            try (InputStream in = body.contentStreamProvider().newStream()) {
+                return in.readAllBytes();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}